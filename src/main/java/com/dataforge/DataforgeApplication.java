@@ -3,9 +3,11 @@ package com.dataforge;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching; // Import EnableCaching
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableCaching // Enable Spring's caching capabilities
+@EnableScheduling // Runs periodic cleanup such as expiring query job results
 public class DataforgeApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,26 @@
+package com.dataforge.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    // Table schemas expire after a fixed time rather than after the last access, so DDL the API doesn't
+    // see (other clients, functions) stops affecting column validation even on a busy table
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> tableSchemaCacheCustomizer(
+            @Value("${dataforge.schema-cache.max-size:1000}") long maxSize,
+            @Value("${dataforge.schema-cache.ttl-seconds:60}") long ttlSeconds) {
+        return cacheManager -> cacheManager.registerCustomCache("tableSchemas", Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build());
+    }
+}
@@ -1,18 +1,23 @@
 package com.dataforge.controller;
 
+import com.dataforge.dto.BatchCreateDatabaseRequest;
+import com.dataforge.dto.BatchOperationResponse;
+import com.dataforge.dto.BatchProvisioningResponse;
 import com.dataforge.dto.CreateDatabaseRequest;
-import com.dataforge.dto.CreateDatabaseResponse;
 import com.dataforge.dto.DatabaseInstanceInfo;
-import com.dataforge.model.DatabaseInstance;
+import com.dataforge.dto.ProvisioningJobStatus;
+import com.dataforge.service.BatchInstanceService;
 import com.dataforge.service.DatabaseInstanceService;
-import com.dataforge.service.DockerService;
+import com.dataforge.service.ProvisioningService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestController
@@ -20,28 +25,46 @@ import java.util.stream.Collectors;
 public class DatabaseController {
 
     @Autowired
-    private DockerService dockerService;
+    private ProvisioningService provisioningService;
 
     @Autowired
     private DatabaseInstanceService instanceService;
 
+    @Autowired
+    private BatchInstanceService batchInstanceService;
+
+    // Provisions in the background; poll the returned job until it is READY before connecting
     @PostMapping
-    public ResponseEntity<CreateDatabaseResponse> createDatabase(@Valid @RequestBody CreateDatabaseRequest request) {
-        DatabaseInstance instance = dockerService.createPostgresContainer(
-            request.dbName(),
-            request.user(),
-            request.password()
-        );
+    public ResponseEntity<?> createDatabase(@Valid @RequestBody CreateDatabaseRequest request) {
+        try {
+            ProvisioningJobStatus status = provisioningService.submit(request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/databases/provisioning/" + status.jobId()))
+                    .body(status);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    // Queues a provisioning job per database; poll each one like a single create
+    @PostMapping("/batch")
+    public ResponseEntity<BatchProvisioningResponse> createDatabases(@Valid @RequestBody BatchCreateDatabaseRequest request) {
+        return ResponseEntity.accepted().body(batchInstanceService.createAll(request.databases()));
+    }
 
-        CreateDatabaseResponse response = new CreateDatabaseResponse(
-            instance.getContainerId(),
-            instance.getDbName(),
-            instance.getDbUser(),
-            instance.getHost(),
-            instance.getPort()
-        );
+    // Removes the instances concurrently; kill skips the graceful stop entirely
+    @DeleteMapping
+    public ResponseEntity<BatchOperationResponse> deleteDatabases(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) Integer stopTimeoutSeconds,
+            @RequestParam(defaultValue = "false") boolean kill) {
+        BatchOperationResponse response = batchInstanceService.deleteAll(ids, stopTimeoutSeconds, kill);
+        return ResponseEntity.status(response.success() ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(response);
+    }
 
-        return ResponseEntity.ok(response);
+    @GetMapping("/provisioning/{jobId}")
+    public ResponseEntity<ProvisioningJobStatus> getProvisioningStatus(@PathVariable String jobId) {
+        return ResponseEntity.ok(provisioningService.getStatus(jobId));
     }
 
     @GetMapping
@@ -52,7 +75,9 @@ public class DatabaseController {
                         instance.getDbName(),
                         instance.getDbUser(),
                         instance.getHost(),
-                        instance.getPort()))
+                        instance.getPort(),
+                        instance.getQueryTimeoutSeconds(),
+                        instance.getResourceProfile()))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(instances);
     }
@@ -63,6 +88,18 @@ public class DatabaseController {
         return ResponseEntity.noContent().build();
     }
 
+    // Sets the default timeout for ad-hoc queries on this instance; omit seconds to use the global default
+    @PutMapping("/{dbId}/query-timeout")
+    public ResponseEntity<String> setQueryTimeout(@PathVariable Long dbId, @RequestParam(required = false) Integer seconds) {
+        if (seconds != null && seconds <= 0) {
+            return ResponseEntity.badRequest().body("Timeout must be a positive number of seconds.");
+        }
+        instanceService.setQueryTimeout(dbId, seconds);
+        return ResponseEntity.ok(seconds == null
+                ? "Query timeout for database ID " + dbId + " reset to the default."
+                : "Query timeout for database ID " + dbId + " set to " + seconds + " seconds.");
+    }
+
     @GetMapping("/{dbId}/test-connection")
     public ResponseEntity<String> testDatabaseConnection(@PathVariable Long dbId) {
         boolean isConnected = instanceService.testConnection(dbId);
@@ -1,12 +1,33 @@
 package com.dataforge.controller;
 
+import com.dataforge.dto.BulkInsertResponse;
+import com.dataforge.dto.CopyImportResponse;
 import com.dataforge.service.DynamicCrudService;
+import com.dataforge.service.KeysetPageStream;
+import com.dataforge.service.ResultSetStream;
+import com.dataforge.service.TableCopyService;
+import com.dataforge.util.ArrowResultSetWriter;
+import com.dataforge.util.ResultFormat;
+import com.dataforge.util.ResultSetJsonWriter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 
@@ -14,9 +35,26 @@ import java.util.Map;
 @RequestMapping("/db/{dbId}/tables/{tableName}")
 public class DynamicCrudController {
 
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     @Autowired
     private DynamicCrudService crudService;
 
+    @Autowired
+    private TableCopyService tableCopyService;
+
+    @Autowired
+    private ResultSetJsonWriter resultSetJsonWriter;
+
+    @Autowired
+    private ArrowResultSetWriter arrowResultSetWriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${dataforge.export.timeout-ms:3600000}")
+    private long exportTimeoutMs;
+
     @PostMapping
     public ResponseEntity<String> createRecord(
             @PathVariable Long dbId,
@@ -31,23 +69,115 @@ public class DynamicCrudController {
         return ResponseEntity.status(201).body("Record created successfully.");
     }
 
+    // Accepts a JSON array of records or an NDJSON stream (one record per line); records are read incrementally
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_MEDIA_TYPE})
+    public ResponseEntity<BulkInsertResponse> bulkCreateRecords(
+            @PathVariable Long dbId,
+            @PathVariable String tableName,
+            @RequestParam(defaultValue = "1000") int chunkSize,
+            InputStream body) throws IOException {
+
+        try (MappingIterator<Map<String, Object>> records = objectMapper
+                .readerFor(new TypeReference<Map<String, Object>>() {})
+                .readValues(body)) {
+            BulkInsertResponse response = crudService.bulkInsert(dbId, tableName, records, chunkSize);
+            HttpStatus status = response.failedRows() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+            return ResponseEntity.status(status).body(response);
+        }
+    }
+
+    // Streams a CSV body (header row first) straight into the table through COPY FROM STDIN
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<CopyImportResponse> importCsv(
+            @PathVariable Long dbId,
+            @PathVariable String tableName,
+            InputStream body) {
+        return ResponseEntity.status(201).body(tableCopyService.importCsv(dbId, tableName, body));
+    }
+
+    @PostMapping(value = "/import", consumes = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<CopyImportResponse> importNdjson(
+            @PathVariable Long dbId,
+            @PathVariable String tableName,
+            InputStream body) {
+        return ResponseEntity.status(201).body(tableCopyService.importNdjson(dbId, tableName, body));
+    }
+
+    // Streams the whole table as CSV through COPY TO STDOUT; memory use does not grow with table size.
+    // Large tables can outlast spring.mvc.async.request-timeout, so the export runs as a task with its own timeout.
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportCsv(
+            @PathVariable Long dbId,
+            @PathVariable String tableName,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) {
+
+        StreamingResponseBody body = tableCopyService.exportCsv(dbId, tableName, gzip);
+        String fileName = tableName + (gzip ? ".csv.gz" : ".csv");
+        response.setContentType(gzip ? "application/gzip" : "text/csv");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            body.writeTo(response.getOutputStream());
+            return null; // The body has been written directly to the response
+        });
+    }
+
+    // Filters use column=value for equality or column=op.value (gt, gte, lt, lte, in, like, between, isnull, eq)
     @GetMapping
-    public ResponseEntity<List<Map<String, Object>>> readRecords(
+    public ResponseEntity<?> readRecords(
             @PathVariable Long dbId,
             @PathVariable String tableName,
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "20") int limit,
             @RequestParam(required = false) String orderBy,
             @RequestParam(required = false) String orderDirection,
-            @RequestParam Map<String, String> allParams // To capture all query parameters
+            @RequestParam(defaultValue = "offset") String pagination, // "offset" or "keyset"
+            @RequestParam(required = false) String cursor, // Continuation token from a previous keyset page
+            @RequestParam(required = false) List<String> fields, // Comma-separated projection, e.g. fields=id,name
+            @RequestParam(required = false) String format, // "objects" (default), "compact", "columnar", "ndjson" or "arrow"
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam MultiValueMap<String, String> allParams // To capture all query parameters
     ) {
         allParams.remove("page");
         allParams.remove("limit");
         allParams.remove("orderBy");
         allParams.remove("orderDirection");
+        allParams.remove("pagination");
+        allParams.remove("cursor");
+        allParams.remove("fields");
+        allParams.remove("format");
+
+        ResultFormat resultFormat = ResultFormat.resolve(format, accept);
+        if (pagination.equalsIgnoreCase("keyset") || cursor != null) {
+            if (resultFormat != ResultFormat.OBJECTS) {
+                return ResponseEntity.badRequest().body("The " + resultFormat.name().toLowerCase() + " format is only available with offset pagination.");
+            }
+            KeysetPageStream keysetPage = crudService.readRecordsKeyset(dbId, tableName, limit, allParams, fields, orderBy, orderDirection, cursor);
+            StreamingResponseBody body = outputStream -> {
+                try (keysetPage) {
+                    resultSetJsonWriter.writeKeysetPage(keysetPage.rows().resultSet(), outputStream, keysetPage.limit(),
+                            keysetPage.keyColumns(), keysetPage.cursorEncoder());
+                } catch (SQLException e) {
+                    throw new IOException("Failed to read records from table '" + tableName + "': " + e.getMessage(), e);
+                }
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        }
 
-        List<Map<String, Object>> records = crudService.readRecords(dbId, tableName, page, limit, allParams, orderBy, orderDirection);
-        return ResponseEntity.ok(records);
+        // Rows are written to the response as they are fetched instead of being collected first
+        ResultSetStream records = crudService.readRecords(dbId, tableName, page, limit, allParams, fields, orderBy, orderDirection);
+        StreamingResponseBody body = outputStream -> {
+            try (records) {
+                if (resultFormat == ResultFormat.ARROW) {
+                    arrowResultSetWriter.write(records.resultSet(), outputStream);
+                } else {
+                    resultSetJsonWriter.writeRecords(records.resultSet(), outputStream, resultFormat);
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to read records from table '" + tableName + "': " + e.getMessage(), e);
+            }
+        };
+        return ResponseEntity.ok().contentType(resultFormat.mediaType()).body(body);
     }
 
     @PutMapping("/{id}")
@@ -0,0 +1,35 @@
+package com.dataforge.controller;
+
+import com.dataforge.dto.FanOutQueryRequest;
+import com.dataforge.dto.FanOutQueryResponse;
+import com.dataforge.service.FanOutQueryService;
+import com.dataforge.service.SettingsService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/databases/query")
+public class FanOutQueryController {
+
+    @Autowired
+    private FanOutQueryService fanOutQueryService;
+
+    @Autowired
+    private SettingsService settingsService;
+
+    // Runs the same read-only SQL on several instances; 207 when only some of them answered
+    @PostMapping
+    public ResponseEntity<?> executeFanOutQuery(
+            @RequestHeader(value = "X-Session-Token", required = false) String sessionToken,
+            @Valid @RequestBody FanOutQueryRequest request) {
+        if (!settingsService.isAuthorized(request.masterPassword(), sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid master password.");
+        }
+
+        FanOutQueryResponse response = fanOutQueryService.execute(request.dbIds(), request.boundSql(), request.timeoutSeconds());
+        return ResponseEntity.status(response.success() ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(response);
+    }
+}
@@ -0,0 +1,20 @@
+package com.dataforge.controller;
+
+import com.dataforge.dto.QueryCacheStats;
+import com.dataforge.service.QueryResultCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/query-cache")
+public class QueryCacheController {
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @GetMapping("/stats")
+    public ResponseEntity<QueryCacheStats> getStats() {
+        return ResponseEntity.ok(queryResultCache.stats());
+    }
+}
@@ -1,41 +1,145 @@
 package com.dataforge.controller;
 
+import com.dataforge.dto.CachedQueryResult;
 import com.dataforge.dto.SqlQueryRequest;
 import com.dataforge.dto.SqlQueryResponse;
+import com.dataforge.dto.SqlScriptRequest;
+import com.dataforge.dto.SqlScriptResponse;
 import com.dataforge.service.QueryService;
+import com.dataforge.service.ResultSetStream;
 import com.dataforge.service.SettingsService; // Import SettingsService
+import com.dataforge.util.ArrowResultSetWriter;
+import com.dataforge.util.ResultFormat;
+import com.dataforge.util.ResultSetJsonWriter;
+import com.dataforge.util.SqlScriptSplitter;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/databases/{dbId}/query")
 public class QueryController {
 
+    // Id of the statement in the running-query registry, usable with DELETE /queries/{queryId} while rows stream
+    private static final String QUERY_ID_HEADER = "X-Query-Id";
+    private static final String CACHE_HEADER = "X-Cache";
+    // Token from POST /api/settings/session, accepted in place of the master password
+    private static final String SESSION_TOKEN_HEADER = "X-Session-Token";
+
     @Autowired
     private QueryService queryService;
 
     @Autowired
     private SettingsService settingsService; // Inject SettingsService
 
+    @Autowired
+    private ResultSetJsonWriter resultSetJsonWriter;
+
+    @Autowired
+    private ArrowResultSetWriter arrowResultSetWriter;
+
+    @Value("${dataforge.query.script.max-statements:1000}")
+    private int scriptMaxStatements;
+
+    @Value("${dataforge.query.stream.max-rows:1000000}")
+    private long streamMaxRows;
+
+    @Value("${dataforge.query.stream.max-bytes:1073741824}")
+    private long streamMaxBytes;
+
     @PostMapping
-    public ResponseEntity<SqlQueryResponse> executeQuery(
+    public ResponseEntity<?> executeQuery(
             @PathVariable Long dbId,
+            @RequestParam(required = false) String format, // "objects" (default), "compact", "columnar", "ndjson" or "arrow"
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(defaultValue = "false") boolean cache, // Serve read-only queries from the result cache
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken,
             @Valid @RequestBody SqlQueryRequest request) {
         
-        // Verify the master password before executing the query
-        if (!settingsService.verifyMasterPassword(request.masterPassword())) {
+        // Verify the session token or master password before executing the query
+        if (!settingsService.isAuthorized(request.masterPassword(), sessionToken)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(SqlQueryResponse.forError("Invalid master password."));
         }
 
-        SqlQueryResponse response = queryService.executeQuery(dbId, request.sql());
-        
-        if (response.success()) {
-            return ResponseEntity.ok(response);
+        ResultFormat resultFormat = ResultFormat.resolve(format, accept);
+        if (cache) {
+            if (resultFormat != ResultFormat.OBJECTS) {
+                return ResponseEntity.badRequest().body(SqlQueryResponse.forError("Cached queries are only available in the objects format."));
+            }
+            try {
+                CachedQueryResult cached = queryService.executeCachedQuery(dbId, request.boundSql(), request.timeoutSeconds());
+                return ResponseEntity.ok().header(CACHE_HEADER, cached.cacheHit() ? "HIT" : "MISS").body(cached.response());
+            } catch (SQLException e) {
+                return ResponseEntity.badRequest().body(SqlQueryResponse.forError(e.getMessage()));
+            }
+        }
+
+        ResultSetStream result;
+        try {
+            // NDJSON streams run read-only so an unbounded stream can never be a write
+            result = queryService.openQuery(dbId, request.boundSql(), resultFormat == ResultFormat.NDJSON, request.timeoutSeconds());
+        } catch (SQLException e) {
+            return ResponseEntity.badRequest().body(SqlQueryResponse.forError(e.getMessage()));
+        }
+
+        if (!result.isQueryResult()) {
+            try (result) {
+                return ResponseEntity.ok().header(QUERY_ID_HEADER, result.queryId()).body(SqlQueryResponse.forUpdate(result.updateCount()));
+            }
+        }
+
+        // Stream the rows as they are fetched; the default format has the same shape as SqlQueryResponse.forSelect
+        StreamingResponseBody body = outputStream -> {
+            try (result) {
+                if (resultFormat == ResultFormat.NDJSON) {
+                    resultSetJsonWriter.writeNdjson(result.resultSet(), outputStream, streamMaxRows, streamMaxBytes);
+                } else if (resultFormat == ResultFormat.ARROW) {
+                    arrowResultSetWriter.write(result.resultSet(), outputStream);
+                } else {
+                    resultSetJsonWriter.writeQueryResponse(result.resultSet(), outputStream, resultFormat);
+                }
+            } catch (SQLException e) {
+                throw new IOException("Query failed while streaming results: " + e.getMessage(), e);
+            }
+        };
+        return ResponseEntity.ok().header(QUERY_ID_HEADER, result.queryId()).contentType(resultFormat.mediaType()).body(body);
+    }
+
+    // Runs a migration or seed script in one transaction with a single master password check
+    @PostMapping("/script")
+    public ResponseEntity<SqlScriptResponse> executeScript(
+            @PathVariable Long dbId,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken,
+            @Valid @RequestBody SqlScriptRequest request) {
+        if (!settingsService.isAuthorized(request.masterPassword(), sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new SqlScriptResponse(false, "Invalid master password.", null, null));
+        }
+
+        List<String> statements;
+        if (request.statements() != null && !request.statements().isEmpty()) {
+            statements = request.statements();
+        } else if (request.script() != null) {
+            statements = SqlScriptSplitter.split(request.script());
         } else {
-            return ResponseEntity.badRequest().body(response);
+            statements = List.of();
         }
+        if (statements.isEmpty()) {
+            return ResponseEntity.badRequest().body(new SqlScriptResponse(false, "The script contains no statements.", null, null));
+        }
+        if (statements.size() > scriptMaxStatements) {
+            return ResponseEntity.badRequest().body(new SqlScriptResponse(false, "A script may contain at most " + scriptMaxStatements + " statements.", null, null));
+        }
+
+        SqlScriptResponse response = queryService.executeScript(dbId, statements, request.timeoutSeconds());
+        return response.success() ? ResponseEntity.ok(response) : ResponseEntity.badRequest().body(response);
     }
 }
@@ -0,0 +1,120 @@
+package com.dataforge.controller;
+
+import com.dataforge.dto.QueryJobStatus;
+import com.dataforge.dto.SqlQueryRequest;
+import com.dataforge.service.QueryJobService;
+import com.dataforge.service.SettingsService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/databases/{dbId}/query-jobs")
+public class QueryJobController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String SESSION_TOKEN_HEADER = "X-Session-Token";
+    // Only the submit request has a body, so the other endpoints take the master password as a header
+    private static final String MASTER_PASSWORD_HEADER = "X-Master-Password";
+
+    @Autowired
+    private QueryJobService queryJobService;
+
+    @Autowired
+    private SettingsService settingsService;
+
+    @PostMapping
+    public ResponseEntity<?> submitJob(
+            @PathVariable Long dbId,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken,
+            @Valid @RequestBody SqlQueryRequest request) {
+        if (!settingsService.isAuthorized(request.masterPassword(), sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid master password.");
+        }
+        try {
+            return ResponseEntity.accepted().body(queryJobService.submit(dbId, request.boundSql(), request.timeoutSeconds()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<QueryJobStatus>> listJobs(
+            @PathVariable Long dbId,
+            @RequestHeader(value = MASTER_PASSWORD_HEADER, required = false) String masterPassword,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken) {
+        if (!settingsService.isAuthorized(masterPassword, sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(queryJobService.listJobs(dbId));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<QueryJobStatus> getJobStatus(
+            @PathVariable Long dbId,
+            @PathVariable String jobId,
+            @RequestHeader(value = MASTER_PASSWORD_HEADER, required = false) String masterPassword,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken) {
+        if (!settingsService.isAuthorized(masterPassword, sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(queryJobService.getStatus(dbId, jobId));
+    }
+
+    // With chunk, returns that page of rows (readable while the job runs); without it, streams every row of a finished job
+    @GetMapping("/{jobId}/results")
+    public ResponseEntity<?> getResults(
+            @PathVariable Long dbId,
+            @PathVariable String jobId,
+            @RequestParam(required = false) Integer chunk,
+            @RequestHeader(value = MASTER_PASSWORD_HEADER, required = false) String masterPassword,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken) {
+        if (!settingsService.isAuthorized(masterPassword, sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid master password.");
+        }
+
+        List<Path> files;
+        if (chunk != null) {
+            files = List.of(queryJobService.getChunkFile(dbId, jobId, chunk));
+        } else {
+            try {
+                files = queryJobService.getChunkFiles(dbId, jobId);
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+            }
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            for (Path file : files) {
+                Files.copy(file, outputStream);
+                outputStream.flush();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header("X-Total-Chunks", String.valueOf(queryJobService.getStatus(dbId, jobId).chunkCount()))
+                .body(body);
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Void> deleteJob(
+            @PathVariable Long dbId,
+            @PathVariable String jobId,
+            @RequestHeader(value = MASTER_PASSWORD_HEADER, required = false) String masterPassword,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken) {
+        if (!settingsService.isAuthorized(masterPassword, sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        queryJobService.deleteJob(dbId, jobId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.dataforge.controller;
+
+import com.dataforge.dto.RunningQueryInfo;
+import com.dataforge.service.RunningQueryRegistry;
+import com.dataforge.service.SettingsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/queries")
+public class RunningQueryController {
+
+    // These endpoints have no request body, so the credentials travel in headers
+    private static final String SESSION_TOKEN_HEADER = "X-Session-Token";
+    private static final String MASTER_PASSWORD_HEADER = "X-Master-Password";
+
+    @Autowired
+    private RunningQueryRegistry runningQueryRegistry;
+
+    @Autowired
+    private SettingsService settingsService;
+
+    @GetMapping
+    public ResponseEntity<List<RunningQueryInfo>> listRunningQueries(
+            @RequestParam(required = false) Long dbId,
+            @RequestHeader(value = MASTER_PASSWORD_HEADER, required = false) String masterPassword,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken) {
+        // The list includes each query's SQL text
+        if (!settingsService.isAuthorized(masterPassword, sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(runningQueryRegistry.list(dbId));
+    }
+
+    // Cancellation is asynchronous: the query's own request fails once Postgres has stopped the statement
+    @DeleteMapping("/{queryId}")
+    public ResponseEntity<String> cancelQuery(
+            @PathVariable String queryId,
+            @RequestHeader(value = MASTER_PASSWORD_HEADER, required = false) String masterPassword,
+            @RequestHeader(value = SESSION_TOKEN_HEADER, required = false) String sessionToken) {
+        if (!settingsService.isAuthorized(masterPassword, sessionToken)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid master password.");
+        }
+        runningQueryRegistry.cancel(queryId);
+        return ResponseEntity.accepted().body("Cancellation requested for query " + queryId + ".");
+    }
+}
@@ -1,5 +1,6 @@
 package com.dataforge.controller;
 
+import com.dataforge.service.SessionTokenService;
 import com.dataforge.service.SettingsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +15,9 @@ public class SettingsController {
     @Autowired
     private SettingsService settingsService;
 
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
     @GetMapping("/master-password/is-set")
     public ResponseEntity<Map<String, Boolean>> isMasterPasswordSet() {
         return ResponseEntity.ok(Map.of("isSet", settingsService.isMasterPasswordSet()));
@@ -33,4 +37,14 @@ public class SettingsController {
         settingsService.setMasterPassword(password);
         return ResponseEntity.status(201).body("Master password has been set successfully.");
     }
+
+    // Exchanges the master password for a short-lived token to send as X-Session-Token instead of the password
+    @PostMapping("/session")
+    public ResponseEntity<?> createSession(@RequestBody Map<String, String> payload) {
+        if (!settingsService.verifyMasterPassword(payload.get("password"))) {
+            return ResponseEntity.status(401).body("Invalid master password.");
+        }
+        SessionTokenService.IssuedToken issued = sessionTokenService.issue();
+        return ResponseEntity.ok(Map.of("token", issued.token(), "expiresAt", issued.expiresAt().toString()));
+    }
 }
@@ -0,0 +1,11 @@
+package com.dataforge.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public record BatchCreateDatabaseRequest(
+    @NotEmpty(message = "At least one database is required")
+    List<@Valid CreateDatabaseRequest> databases
+) {}
@@ -0,0 +1,11 @@
+package com.dataforge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchInstanceResult(
+    Long dbId,
+    boolean success,
+    long elapsedMs,
+    String error
+) {}
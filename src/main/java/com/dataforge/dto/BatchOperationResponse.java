@@ -0,0 +1,8 @@
+package com.dataforge.dto;
+
+import java.util.List;
+
+public record BatchOperationResponse(
+    boolean success,                    // False when at least one instance failed
+    List<BatchInstanceResult> instances // One outcome per requested instance, in request order
+) {}
@@ -0,0 +1,7 @@
+package com.dataforge.dto;
+
+import java.util.List;
+
+public record BatchProvisioningResponse(
+    List<ProvisioningJobStatus> jobs  // One job per requested database, in request order; poll each until READY
+) {}
@@ -0,0 +1,11 @@
+package com.dataforge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkChunkResult(
+    int chunkIndex,
+    int rows,         // Number of records in the chunk
+    boolean success,  // False if the chunk was rolled back
+    String error      // Failure reason for a rolled back chunk
+) {}
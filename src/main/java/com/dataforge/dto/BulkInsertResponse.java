@@ -0,0 +1,10 @@
+package com.dataforge.dto;
+
+import java.util.List;
+
+public record BulkInsertResponse(
+    int totalRows,
+    int insertedRows,
+    int failedRows,
+    List<BulkChunkResult> chunks
+) {}
@@ -0,0 +1,6 @@
+package com.dataforge.dto;
+
+public record CachedQueryResult(
+    SqlQueryResponse response,
+    boolean cacheHit
+) {}
@@ -0,0 +1,25 @@
+package com.dataforge.dto;
+
+/**
+ * Resolved connection details for a managed database instance.
+ *
+ * @param dbId     The id of the database instance.
+ * @param jdbcUrl  The JDBC URL of the instance.
+ * @param user     The database user.
+ * @param password The decrypted password of the database user.
+ * @param queryTimeoutSeconds The instance's default query timeout, or null to use the global default.
+ */
+public record ConnectionDescriptor(
+    Long dbId,
+    String jdbcUrl,
+    String user,
+    String password,
+    Integer queryTimeoutSeconds
+) {
+    // Keep the decrypted password out of logs
+    @Override
+    public String toString() {
+        return "ConnectionDescriptor[dbId=" + dbId + ", jdbcUrl=" + jdbcUrl + ", user=" + user
+                + ", queryTimeoutSeconds=" + queryTimeoutSeconds + "]";
+    }
+}
@@ -0,0 +1,9 @@
+package com.dataforge.dto;
+
+import java.util.List;
+
+public record CopyImportResponse(
+    String tableName,
+    List<String> columns, // Columns loaded, in input order
+    long rowsCopied
+) {}
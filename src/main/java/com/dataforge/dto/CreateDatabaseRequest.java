@@ -1,5 +1,6 @@
 package com.dataforge.dto;
 
+import com.dataforge.util.ResourceProfile;
 import jakarta.validation.constraints.NotBlank; // Import NotBlank
 
 // Using record for an immutable, concise DTO
@@ -9,7 +10,12 @@ public record CreateDatabaseRequest(
     @NotBlank(message = "User cannot be empty")
     String user,
     @NotBlank(message = "Password cannot be empty")
-    String password
+    String password,
+    // Optional resource limits: "small", "medium" or "large", and/or explicit values overriding the profile's
+    String profile,
+    Long memoryMb,
+    Double cpus,
+    Long shmSizeMb
 ) {
     // The isValid() method is no longer strictly necessary as validation will be handled by annotations
     // but can be kept for additional custom logic if needed.
@@ -18,4 +24,9 @@ public record CreateDatabaseRequest(
                user != null && !user.isBlank() &&
                password != null && !password.isBlank();
     }
+
+    // Null when no limits were requested
+    public ResourceProfile resourceProfile() {
+        return ResourceProfile.resolve(profile, memoryMb, cpus, shmSizeMb);
+    }
 }
@@ -5,5 +5,7 @@ public record DatabaseInstanceInfo(
     String dbName,
     String user,
     String host,
-    int port
+    int port,
+    Integer queryTimeoutSeconds,
+    String resourceProfile
 ) {}
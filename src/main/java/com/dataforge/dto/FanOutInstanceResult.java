@@ -0,0 +1,13 @@
+package com.dataforge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FanOutInstanceResult(
+    Long dbId,
+    boolean success,
+    Integer rowCount,  // Rows this instance added to the merged result
+    Boolean truncated, // True when the per-instance or total row cap dropped some (or, once the total is used up, all) of its rows
+    long elapsedMs,
+    String error
+) {}
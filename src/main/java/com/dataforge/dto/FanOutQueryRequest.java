@@ -0,0 +1,30 @@
+package com.dataforge.dto;
+
+import com.dataforge.util.BoundSql;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+import java.util.Map;
+
+public record FanOutQueryRequest(
+    @NotBlank(message = "SQL query cannot be empty")
+    String sql,
+
+    // Not needed when an X-Session-Token header is sent
+    String masterPassword,
+
+    // Instances to query; null or empty queries every managed instance
+    List<Long> dbIds,
+
+    // Optional per-instance timeout; defaults to each instance's query timeout
+    @Positive(message = "Timeout must be a positive number of seconds")
+    Integer timeoutSeconds,
+
+    List<Object> params,
+    Map<String, Object> namedParams
+) {
+    public BoundSql boundSql() {
+        return BoundSql.of(sql, params, namedParams);
+    }
+}
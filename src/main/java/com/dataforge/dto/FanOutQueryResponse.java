@@ -0,0 +1,12 @@
+package com.dataforge.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public record FanOutQueryResponse(
+    boolean success,                  // False when at least one instance failed
+    boolean truncated,                // True when a row cap dropped rows; see the instances for which
+    List<String> columns,             // "@dbId" followed by the query's columns
+    List<Map<String, Object>> rows,   // Rows of every successful instance, each tagged with its dbId
+    List<FanOutInstanceResult> instances
+) {}
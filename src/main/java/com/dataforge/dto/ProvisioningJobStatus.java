@@ -0,0 +1,22 @@
+package com.dataforge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProvisioningJobStatus(
+    String jobId,
+    String status,           // PENDING, READY or FAILED
+    String dbName,
+    Long dbId,               // Set once the container is registered
+    String containerId,
+    String host,
+    Integer port,
+    Instant submittedAt,
+    Instant startedAt,
+    Instant finishedAt,
+    Long containerMillis,    // Time spent creating and starting the container
+    Long readinessMillis,    // Time spent waiting until Postgres accepted a JDBC connection
+    String error
+) {}
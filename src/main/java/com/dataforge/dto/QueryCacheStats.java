@@ -0,0 +1,12 @@
+package com.dataforge.dto;
+
+public record QueryCacheStats(
+    long entries,
+    long sizeBytes,     // Estimated size of the cached responses
+    long maxBytes,
+    long hits,
+    long misses,
+    double hitRate,
+    long evictions,
+    long invalidations  // Entries dropped because a table they read was written to or altered
+) {}
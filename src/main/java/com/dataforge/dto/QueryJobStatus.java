@@ -0,0 +1,22 @@
+package com.dataforge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record QueryJobStatus(
+    String jobId,
+    Long dbId,
+    String status,        // QUEUED, RUNNING, SUCCEEDED, FAILED or CANCELLED
+    Instant submittedAt,
+    Instant startedAt,
+    Instant finishedAt,
+    List<String> columns, // Known once the query has started returning rows
+    long rowCount,        // Rows spilled so far
+    int chunkCount,       // Result chunks that can be read so far
+    Integer updateCount,  // Set instead of rows for statements that don't return rows
+    Boolean truncated,    // True when the row limit stopped the spill
+    String error
+) {}
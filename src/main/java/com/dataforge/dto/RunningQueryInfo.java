@@ -0,0 +1,13 @@
+package com.dataforge.dto;
+
+import java.time.Instant;
+
+public record RunningQueryInfo(
+    String queryId,
+    Long dbId,
+    String sql,
+    Instant startedAt,
+    long elapsedMs,
+    int timeoutSeconds,
+    int backendPid // -1 when the backend process id could not be read
+) {}
@@ -1,12 +1,30 @@
 package com.dataforge.dto;
 
+import com.dataforge.util.BoundSql;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+import java.util.Map;
 
 public record SqlQueryRequest(
     @NotBlank(message = "SQL query cannot be empty")
     String sql,
     
-    // The master password is required to execute a direct query
-    @NotBlank(message = "Master password is required for this operation")
-    String masterPassword
-) {}
+    // The master password is required to execute a direct query, unless an X-Session-Token header is sent
+    String masterPassword,
+
+    // Optional; defaults to the instance's query timeout
+    @Positive(message = "Timeout must be a positive number of seconds")
+    Integer timeoutSeconds,
+
+    // Optional values for ? placeholders, in order
+    List<Object> params,
+
+    // Optional values for :name placeholders; can't be combined with params
+    Map<String, Object> namedParams
+) {
+    public BoundSql boundSql() {
+        return BoundSql.of(sql, params, namedParams);
+    }
+}
@@ -0,0 +1,18 @@
+package com.dataforge.dto;
+
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+
+public record SqlScriptRequest(
+    // Either an ordered list of statements or a script to split at top-level semicolons
+    List<String> statements,
+    String script,
+
+    // Not needed when an X-Session-Token header is sent
+    String masterPassword,
+
+    // Optional; applies to the whole script and defaults to the instance's query timeout
+    @Positive(message = "Timeout must be a positive number of seconds")
+    Integer timeoutSeconds
+) {}
@@ -0,0 +1,21 @@
+package com.dataforge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SqlScriptResponse(
+    boolean success,
+    String message,
+    List<SqlQueryResponse> results, // One per executed statement, in script order
+    Integer failedStatement         // Index of the statement that failed; everything was rolled back
+) {
+    public static SqlScriptResponse forSuccess(List<SqlQueryResponse> results) {
+        return new SqlScriptResponse(true, "Script executed successfully. Statements: " + results.size() + ".", results, null);
+    }
+
+    public static SqlScriptResponse forFailure(List<SqlQueryResponse> results, int failedStatement, String error) {
+        return new SqlScriptResponse(false, "Statement " + failedStatement + " failed, transaction rolled back: " + error, results, failedStatement);
+    }
+}
@@ -0,0 +1,25 @@
+package com.dataforge.exception;
+
+/**
+ * Thrown when an instance's bulkhead turns a request away, either because its wait queue is full
+ * or because no slot freed up within the queue timeout.
+ */
+public class InstanceBusyException extends RuntimeException {
+
+    private final boolean queueFull;
+    private final long retryAfterSeconds;
+
+    public InstanceBusyException(String message, boolean queueFull, long retryAfterSeconds) {
+        super(message);
+        this.queueFull = queueFull;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isQueueFull() {
+        return queueFull;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -18,6 +18,8 @@ public class DatabaseInstance {
     private String dbPassword; // In a real app, this should be encrypted
     private String host;
     private int port;
+    private Integer queryTimeoutSeconds; // Null falls back to dataforge.query.default-timeout-seconds
+    private String resourceProfile; // small, medium, large or custom; null when the container has no limits
 
     // Getters and Setters
 
@@ -76,4 +78,20 @@ public class DatabaseInstance {
     public void setPort(int port) {
         this.port = port;
     }
+
+    public Integer getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    public void setQueryTimeoutSeconds(Integer queryTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+
+    public String getResourceProfile() {
+        return resourceProfile;
+    }
+
+    public void setResourceProfile(String resourceProfile) {
+        this.resourceProfile = resourceProfile;
+    }
 }
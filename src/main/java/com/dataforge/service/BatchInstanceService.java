@@ -0,0 +1,128 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.BatchInstanceResult;
+import com.dataforge.dto.BatchOperationResponse;
+import com.dataforge.dto.BatchProvisioningResponse;
+import com.dataforge.dto.CreateDatabaseRequest;
+import com.dataforge.exception.InvalidInputException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Creates or removes many instances in one request, one virtual thread per instance. At most maxParallelism
+ * Docker operations run at a time across all batch requests; the rest wait for a permit instead of being rejected.
+ * Every instance gets its own outcome, so one failure doesn't abort the rest of the batch.
+ */
+@Service
+public class BatchInstanceService {
+
+    @Autowired
+    private ProvisioningService provisioningService;
+
+    @Autowired
+    private DatabaseInstanceService databaseInstanceService;
+
+    @Value("${dataforge.batch.max-parallelism:8}")
+    private int maxParallelism;
+
+    @Value("${dataforge.batch.max-size:100}")
+    private int maxSize;
+
+    @Value("${dataforge.batch.stop-timeout-seconds:2}")
+    private int defaultStopTimeoutSeconds;
+
+    // Shared by all batch requests, so concurrent batches can't multiply the load on the Docker daemon
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxParallelism);
+    }
+
+    /**
+     * Queues a provisioning job per database and returns immediately; poll each job until it is READY.
+     * Every database that passes the size check is accepted: the jobs wait for a permit rather than a queue slot.
+     */
+    public BatchProvisioningResponse createAll(List<CreateDatabaseRequest> requests) {
+        checkSize(requests.size());
+        return new BatchProvisioningResponse(provisioningService.submitAll(requests, permits));
+    }
+
+    // A null stopTimeoutSeconds uses the batch default, which is shorter than Docker's 10 seconds
+    public BatchOperationResponse deleteAll(List<Long> ids, Integer stopTimeoutSeconds, boolean kill) {
+        checkSize(ids.size());
+        if (stopTimeoutSeconds != null && stopTimeoutSeconds < 0) {
+            throw new InvalidInputException("Stop timeout cannot be negative.");
+        }
+        int stopTimeout = stopTimeoutSeconds != null ? stopTimeoutSeconds : defaultStopTimeoutSeconds;
+        return runAll(ids.stream().distinct().toList(), id -> {
+            long start = System.nanoTime();
+            try {
+                databaseInstanceService.deleteInstance(id, stopTimeout, kill);
+                return new BatchInstanceResult(id, true, elapsedMs(start), null);
+            } catch (Exception e) {
+                return new BatchInstanceResult(id, false, elapsedMs(start), e.getMessage());
+            }
+        });
+    }
+
+    private <T> BatchOperationResponse runAll(List<T> items, Function<T, BatchInstanceResult> operation) {
+        List<Future<BatchInstanceResult>> futures = new ArrayList<>(items.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (T item : items) {
+                Callable<BatchInstanceResult> task = () -> {
+                    permits.acquire();
+                    try {
+                        return operation.apply(item);
+                    } finally {
+                        permits.release();
+                    }
+                };
+                futures.add(executor.submit(task));
+            }
+        }
+
+        List<BatchInstanceResult> results = new ArrayList<>(futures.size());
+        for (Future<BatchInstanceResult> future : futures) {
+            results.add(resultOf(future));
+        }
+        boolean success = results.stream().allMatch(BatchInstanceResult::success);
+        return new BatchOperationResponse(success, results);
+    }
+
+    private BatchInstanceResult resultOf(Future<BatchInstanceResult> future) {
+        try {
+            return future.get(); // The executor has already waited for every task
+        } catch (ExecutionException e) {
+            return new BatchInstanceResult(null, false, 0, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BatchInstanceResult(null, false, 0, "Interrupted.");
+        }
+    }
+
+    private void checkSize(int size) {
+        if (size == 0) {
+            throw new InvalidInputException("At least one instance is required.");
+        }
+        if (size > maxSize) {
+            throw new InvalidInputException("A batch may contain at most " + maxSize + " instances.");
+        }
+    }
+
+    private long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
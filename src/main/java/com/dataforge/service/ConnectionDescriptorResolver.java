@@ -0,0 +1,40 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.ConnectionDescriptor;
+import com.dataforge.exception.ResourceNotFoundException;
+import com.dataforge.model.DatabaseInstance;
+import com.dataforge.repository.DatabaseInstanceRepository;
+import com.dataforge.util.EncryptionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the JDBC URL and decrypted credentials of a managed instance.
+ * Results are cached per dbId so the H2 lookup and AES decryption only happen on first use;
+ * anything that changes an instance's stored settings must call {@link #invalidate(Long)}.
+ */
+@Service
+public class ConnectionDescriptorResolver {
+
+    @Autowired
+    private DatabaseInstanceRepository instanceRepository;
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Cacheable(value = "connectionDescriptors", key = "#dbId")
+    public ConnectionDescriptor resolve(Long dbId) {
+        DatabaseInstance instance = instanceRepository.findById(dbId)
+                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
+
+        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
+        return new ConnectionDescriptor(dbId, url, instance.getDbUser(), encryptionUtil.decrypt(instance.getDbPassword()),
+                instance.getQueryTimeoutSeconds());
+    }
+
+    @CacheEvict(value = "connectionDescriptors", key = "#dbId")
+    public void invalidate(Long dbId) {
+        // Eviction is handled by the annotation
+    }
+}
@@ -0,0 +1,164 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.ConnectionDescriptor;
+import com.dataforge.exception.ResourceNotFoundException;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps one bounded HikariCP pool per managed database instance.
+ * Pools are built lazily on the first connection request for an instance and
+ * closed when the instance is deleted or the application shuts down.
+ */
+@Service
+public class ConnectionPoolRegistry {
+
+    private final Map<Long, HikariDataSource> pools = new ConcurrentHashMap<>();
+    // Instances being deleted; no pool may be built for them, or a request racing the delete would leak one.
+    // Ids are never reused, so entries of deleted instances are left in place
+    private final Set<Long> retired = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private ConnectionDescriptorResolver connectionDescriptorResolver;
+    @Autowired
+    private InstanceBulkhead instanceBulkhead;
+
+    @Value("${dataforge.pool.min-idle:0}")
+    private int minIdle;
+
+    @Value("${dataforge.pool.max-size:10}")
+    private int maxSize;
+
+    @Value("${dataforge.pool.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    @Value("${dataforge.pool.max-lifetime-ms:1800000}")
+    private long maxLifetimeMs;
+
+    @Value("${dataforge.pool.connection-timeout-ms:10000}")
+    private long connectionTimeoutMs;
+
+    @Value("${dataforge.pool.prepare-threshold:3}")
+    private int prepareThreshold;
+
+    @Value("${dataforge.pool.prepared-statement-cache-queries:256}")
+    private int preparedStatementCacheQueries;
+
+    @Value("${dataforge.pool.prepared-statement-cache-size-mib:5}")
+    private int preparedStatementCacheSizeMiB;
+
+    /**
+     * Borrows a pooled connection after taking a slot in the instance's bulkhead. The slot is released when
+     * the returned connection is closed. Throws InstanceBusyException when the instance is saturated.
+     */
+    public Connection getConnection(Long dbId) throws SQLException {
+        HikariDataSource dataSource = getDataSource(dbId);
+        instanceBulkhead.acquire(dbId);
+        try {
+            return releasingOnClose(dataSource.getConnection(), dbId);
+        } catch (SQLException | RuntimeException e) {
+            instanceBulkhead.release(dbId);
+            throw e;
+        }
+    }
+
+    public HikariDataSource getDataSource(Long dbId) {
+        HikariDataSource dataSource = pools.get(dbId);
+        if (dataSource != null) {
+            return dataSource;
+        }
+        // computeIfAbsent keeps two concurrent first requests from building two pools
+        return pools.computeIfAbsent(dbId, this::createPool);
+    }
+
+    /**
+     * Closes the instance's pool and refuses to build a new one, so requests racing a delete fail
+     * instead of reconnecting. {@link #reinstate} undoes it when the delete fails.
+     */
+    public void retire(Long dbId) {
+        retired.add(dbId); // Before evicting, so a concurrent first request can't slip a new pool in between
+        evict(dbId);
+    }
+
+    public void reinstate(Long dbId) {
+        retired.remove(dbId);
+    }
+
+    public void evict(Long dbId) {
+        instanceBulkhead.remove(dbId);
+        HikariDataSource dataSource = pools.remove(dbId);
+        if (dataSource != null) {
+            dataSource.close();
+            System.out.println("Connection pool for DB ID " + dbId + " closed.");
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        pools.keySet().forEach(this::evict);
+    }
+
+    // Wraps the connection so that closing it also frees the bulkhead slot, exactly once
+    private Connection releasingOnClose(Connection connection, Long dbId) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                try {
+                    connection.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        instanceBulkhead.release(dbId);
+                    }
+                }
+                return null;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private HikariDataSource createPool(Long dbId) {
+        if (retired.contains(dbId)) {
+            throw new ResourceNotFoundException("Database instance not found with id: " + dbId);
+        }
+        ConnectionDescriptor descriptor = connectionDescriptorResolver.resolve(dbId);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("dataforge-db-" + dbId);
+        config.setJdbcUrl(descriptor.jdbcUrl());
+        config.setUsername(descriptor.user());
+        config.setPassword(descriptor.password());
+        config.setMinimumIdle(minIdle);
+        config.setMaximumPoolSize(maxSize);
+        config.setIdleTimeout(idleTimeoutMs);
+        config.setMaxLifetime(maxLifetimeMs);
+        config.setConnectionTimeout(connectionTimeoutMs);
+        // Let pgjdbc rewrite JDBC insert batches into multi-row VALUES statements
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        // Keep server-side prepared statements per connection, so repeated parameterized queries skip parse and planning
+        config.addDataSourceProperty("prepareThreshold", String.valueOf(prepareThreshold));
+        config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(preparedStatementCacheQueries));
+        config.addDataSourceProperty("preparedStatementCacheSizeMiB", String.valueOf(preparedStatementCacheSizeMiB));
+        // Don't fail pool creation when the container is down; getConnection() reports it instead
+        config.setInitializationFailTimeout(-1);
+
+        System.out.println("Creating connection pool for DB ID " + dbId + " (max size " + maxSize + ")");
+        return new HikariDataSource(config);
+    }
+}
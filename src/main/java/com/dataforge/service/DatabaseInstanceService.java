@@ -3,13 +3,11 @@ package com.dataforge.service;
 import com.dataforge.exception.ResourceNotFoundException;
 import com.dataforge.model.DatabaseInstance;
 import com.dataforge.repository.DatabaseInstanceRepository;
-import com.dataforge.util.EncryptionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
@@ -19,13 +17,21 @@ public class DatabaseInstanceService {
 
     private final DatabaseInstanceRepository repository;
     private final DockerService dockerService;
-    private final EncryptionUtil encryptionUtil;
+    private final ConnectionPoolRegistry connectionPoolRegistry;
+    private final ConnectionDescriptorResolver connectionDescriptorResolver;
+    private final QueryResultCache queryResultCache;
+    private final QueryJobService queryJobService;
 
     @Autowired
-    public DatabaseInstanceService(DatabaseInstanceRepository repository, DockerService dockerService, EncryptionUtil encryptionUtil) {
+    public DatabaseInstanceService(DatabaseInstanceRepository repository, DockerService dockerService,
+                                   ConnectionPoolRegistry connectionPoolRegistry, ConnectionDescriptorResolver connectionDescriptorResolver,
+                                   QueryResultCache queryResultCache, QueryJobService queryJobService) {
         this.repository = repository;
         this.dockerService = dockerService;
-        this.encryptionUtil = encryptionUtil;
+        this.connectionPoolRegistry = connectionPoolRegistry;
+        this.connectionDescriptorResolver = connectionDescriptorResolver;
+        this.queryResultCache = queryResultCache;
+        this.queryJobService = queryJobService;
     }
 
     public List<DatabaseInstance> getAllInstances() {
@@ -34,22 +40,57 @@ public class DatabaseInstanceService {
 
     @Transactional
     public void deleteInstance(Long id) { // Changed return type to void
-        DatabaseInstance instance = repository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + id)); // Throw exception
+        DatabaseInstance instance = findInstance(id);
+        connectionPoolRegistry.retire(id);
+        try {
+            dockerService.removeContainer(instance.getContainerId());
+            repository.deleteById(id);
+        } catch (RuntimeException e) {
+            connectionPoolRegistry.reinstate(id);
+            throw e;
+        }
+        releaseResources(id);
+    }
 
-        dockerService.removeContainer(instance.getContainerId());
-        repository.deleteById(id);
+    // Same as deleteInstance, with a shorter stop grace period or an immediate kill for disposable instances
+    @Transactional
+    public void deleteInstance(Long id, int stopTimeoutSeconds, boolean kill) {
+        DatabaseInstance instance = findInstance(id);
+        connectionPoolRegistry.retire(id);
+        try {
+            dockerService.removeContainer(instance.getContainerId(), stopTimeoutSeconds, kill);
+            repository.deleteById(id);
+        } catch (RuntimeException e) {
+            connectionPoolRegistry.reinstate(id);
+            throw e;
+        }
+        releaseResources(id);
     }
 
-    public boolean testConnection(Long dbId) {
-        DatabaseInstance instance = repository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
+    private DatabaseInstance findInstance(Long id) {
+        return repository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + id)); // Throw exception
+    }
 
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String user = instance.getDbUser();
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
+    // Runs once the pool is retired, so no new query can repopulate what is cleared here
+    private void releaseResources(Long id) {
+        connectionDescriptorResolver.invalidate(id);
+        queryResultCache.invalidateDatabase(id);
+        queryJobService.forgetInstance(id);
+    }
 
-        try (Connection conn = DriverManager.getConnection(url, user, decryptedPassword)) {
+    public DatabaseInstance setQueryTimeout(Long id, Integer timeoutSeconds) {
+        DatabaseInstance instance = repository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + id));
+        instance.setQueryTimeoutSeconds(timeoutSeconds);
+        DatabaseInstance saved = repository.save(instance);
+        // The timeout is read from the cached descriptor
+        connectionDescriptorResolver.invalidate(id);
+        return saved;
+    }
+
+    public boolean testConnection(Long dbId) {
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
             return conn.isValid(5);
         } catch (SQLException e) {
             System.err.println("Failed to test connection for DB ID " + dbId + ": " + e.getMessage());
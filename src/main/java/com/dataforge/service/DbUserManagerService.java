@@ -3,16 +3,11 @@ package com.dataforge.service;
 import com.dataforge.dto.DbUserInfo;
 import com.dataforge.dto.ManagePermissionsRequest;
 import com.dataforge.dto.UserPermissionInfo;
-import com.dataforge.exception.ResourceNotFoundException;
 import com.dataforge.exception.InvalidInputException;
-import com.dataforge.model.DatabaseInstance;
-import com.dataforge.repository.DatabaseInstanceRepository;
-import com.dataforge.util.EncryptionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -25,22 +20,13 @@ import java.util.stream.Collectors;
 public class DbUserManagerService {
 
     @Autowired
-    private DatabaseInstanceRepository instanceRepository;
-    @Autowired
-    private EncryptionUtil encryptionUtil;
+    private ConnectionPoolRegistry connectionPoolRegistry;
 
     public void createDbUser(Long dbId, String username, String password) {
-        DatabaseInstance instance = instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
-
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String dbAdminUser = instance.getDbUser();
-        String dbAdminPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String createUserSql = String.format("CREATE USER %s WITH PASSWORD '%s';", username, password.replace("'", "''"));
         System.out.println("Executing SQL: " + createUserSql);
 
-        try (Connection conn = DriverManager.getConnection(url, dbAdminUser, dbAdminPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(createUserSql);
         } catch (SQLException e) {
@@ -49,17 +35,10 @@ public class DbUserManagerService {
     }
 
     public void deleteDbUser(Long dbId, String username) {
-        DatabaseInstance instance = instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
-
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String dbAdminUser = instance.getDbUser();
-        String dbAdminPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String dropUserSql = String.format("DROP USER IF EXISTS %s;", username);
         System.out.println("Executing SQL: " + dropUserSql);
 
-        try (Connection conn = DriverManager.getConnection(url, dbAdminUser, dbAdminPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(dropUserSql);
         } catch (SQLException e) {
@@ -68,18 +47,11 @@ public class DbUserManagerService {
     }
 
     public void grantPermissions(Long dbId, String username, ManagePermissionsRequest request) {
-        DatabaseInstance instance = instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
-
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String dbAdminUser = instance.getDbUser();
-        String dbAdminPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String privileges = request.privileges().stream().collect(Collectors.joining(", "));
         String grantSql = String.format("GRANT %s ON TABLE %s TO %s;", privileges, request.tableName(), username);
         System.out.println("Executing SQL: " + grantSql);
 
-        try (Connection conn = DriverManager.getConnection(url, dbAdminUser, dbAdminPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(grantSql);
         } catch (SQLException e) {
@@ -88,18 +60,11 @@ public class DbUserManagerService {
     }
 
     public void revokePermissions(Long dbId, String username, ManagePermissionsRequest request) {
-        DatabaseInstance instance = instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
-
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String dbAdminUser = instance.getDbUser();
-        String dbAdminPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String privileges = request.privileges().stream().collect(Collectors.joining(", "));
         String revokeSql = String.format("REVOKE %s ON TABLE %s FROM %s;", privileges, request.tableName(), username);
         System.out.println("Executing SQL: " + revokeSql);
 
-        try (Connection conn = DriverManager.getConnection(url, dbAdminUser, dbAdminPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(revokeSql);
         } catch (SQLException e) {
@@ -108,19 +73,13 @@ public class DbUserManagerService {
     }
 
     public List<DbUserInfo> listDbUsers(Long dbId) {
-        DatabaseInstance instance = instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
-
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String dbAdminUser = instance.getDbUser();
-        String dbAdminPassword = encryptionUtil.decrypt(instance.getDbPassword());
         List<DbUserInfo> users = new ArrayList<>();
 
         // Query pg_catalog.pg_user to get user information
         String listUsersSql = "SELECT usename, usesuper, usecreatedb FROM pg_catalog.pg_user ORDER BY usename;";
         System.out.println("Executing SQL: " + listUsersSql);
 
-        try (Connection conn = DriverManager.getConnection(url, dbAdminUser, dbAdminPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(listUsersSql)) {
 
@@ -138,12 +97,6 @@ public class DbUserManagerService {
     }
 
     public List<UserPermissionInfo> listUserPermissions(Long dbId, String username) {
-        DatabaseInstance instance = instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
-
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String dbAdminUser = instance.getDbUser();
-        String dbAdminPassword = encryptionUtil.decrypt(instance.getDbPassword());
         List<UserPermissionInfo> permissions = new ArrayList<>();
 
         // Query information_schema.role_table_grants to get table privileges for a user
@@ -154,7 +107,7 @@ public class DbUserManagerService {
         );
         System.out.println("Executing SQL: " + listPermissionsSql);
 
-        try (Connection conn = DriverManager.getConnection(url, dbAdminUser, dbAdminPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(listPermissionsSql)) {
 
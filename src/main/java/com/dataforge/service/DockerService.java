@@ -3,7 +3,9 @@ package com.dataforge.service;
 import com.dataforge.model.DatabaseInstance;
 import com.dataforge.repository.DatabaseInstanceRepository;
 import com.dataforge.util.EncryptionUtil;
+import com.dataforge.util.ResourceProfile;
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.CreateContainerResponse;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.ExposedPort;
@@ -15,22 +17,74 @@ import com.github.dockerjava.core.DockerClientImpl;
 import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
 import com.github.dockerjava.transport.DockerHttpClient;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
 @Service
 public class DockerService {
 
+    // Marks containers started as warm-pool spares; claimed spares keep the label but are then registered instances
+    private static final String SPARE_LABEL = "dataforge.spare";
+    private static final String SPARE_SUPERUSER = "postgres";
+
     private final DatabaseInstanceRepository repository;
     private final EncryptionUtil encryptionUtil;
+    private final ConnectionDescriptorResolver connectionDescriptorResolver;
     
     private DockerClient dockerClient;
     private boolean isDockerConnected = false;
 
+    // Images known to exist locally, so a create only asks the daemon (or the registry) on a miss
+    private final Set<String> presentImages = ConcurrentHashMap.newKeySet();
+    // One lock per image so concurrent creates don't pull the same image twice
+    private final Map<String, Object> pullLocks = new ConcurrentHashMap<>();
+
+    @Value("${dataforge.docker.image:postgres:17}")
+    private String postgresImage;
+
+    @Value("${dataforge.docker.prepull-images:postgres:17}")
+    private String[] prepullImages; // Image catalog pulled in the background at startup
+
+    // Started and initialized containers waiting to be claimed by a create
+    private final Deque<SpareContainer> spares = new ConcurrentLinkedDeque<>();
+    private final SecureRandom secureRandom = new SecureRandom();
+    private ScheduledExecutorService warmPoolRefiller;
+
+    @Value("${dataforge.docker.stop-timeout-seconds:10}")
+    private int defaultStopTimeoutSeconds; // Grace period before Docker kills a stopping container
+
+    @Value("${dataforge.warm-pool.size:0}")
+    private int warmPoolSize;
+
+    @Value("${dataforge.warm-pool.refill-interval-seconds:10}")
+    private long warmPoolRefillIntervalSeconds;
+
+    @Value("${dataforge.warm-pool.ready-timeout-seconds:60}")
+    private long warmPoolReadyTimeoutSeconds;
+
     @Autowired
-    public DockerService(DatabaseInstanceRepository repository, EncryptionUtil encryptionUtil) {
+    public DockerService(DatabaseInstanceRepository repository, EncryptionUtil encryptionUtil, ConnectionDescriptorResolver connectionDescriptorResolver) {
         this.repository = repository;
         this.encryptionUtil = encryptionUtil;
+        this.connectionDescriptorResolver = connectionDescriptorResolver;
     }
 
     @PostConstruct
@@ -45,6 +99,8 @@ public class DockerService {
             this.dockerClient.pingCmd().exec();
             this.isDockerConnected = true;
             System.out.println("Successfully connected to Docker daemon.");
+            prepullImagesAsync();
+            startWarmPool();
         } catch (Exception e) {
             this.isDockerConnected = false;
             System.err.println("!!! FAILED TO CONNECT TO DOCKER DAEMON !!!");
@@ -57,37 +113,69 @@ public class DockerService {
         return this.isDockerConnected;
     }
 
-    public DatabaseInstance createPostgresContainer(String dbName, String user, String password) {
+    /**
+     * Creates the instance with the given limits applied to the container and matching Postgres settings,
+     * or from a warm spare when no profile is given. Spares have no limits, so a request with a profile
+     * always gets a new container.
+     */
+    public DatabaseInstance createPostgresContainer(String dbName, String user, String password, ResourceProfile profile) {
         if (!isDockerConnected) {
             throw new IllegalStateException("Cannot create container: Not connected to Docker daemon.");
         }
 
-        System.out.println("Ensuring postgres:17 image exists locally...");
-        try {
-            dockerClient.pullImageCmd("postgres").withTag("17").start().awaitCompletion();
-            System.out.println("postgres:17 image is ready.");
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Failed while waiting for postgres:17 image to pull", e);
+        // A spare already has a running server, so only the role and database need creating
+        if (profile == null && warmPoolSize > 0 && !SPARE_SUPERUSER.equals(user) && !SPARE_SUPERUSER.equals(dbName)) {
+            SpareContainer spare = spares.pollFirst();
+            if (spare != null) {
+                warmPoolRefiller.execute(this::refillWarmPool);
+                try {
+                    claimSpare(spare, dbName, user, password);
+                    System.out.println("Claimed warm container " + spare.containerId() + " for database " + dbName + ".");
+                    return saveInstance(spare.containerId(), spare.hostPort(), dbName, user, password, null);
+                } catch (SQLException e) {
+                    System.err.println("Failed to claim warm container " + spare.containerId() + ", creating a new one: " + e.getMessage());
+                    removeContainerQuietly(spare.containerId());
+                }
+            }
         }
 
+        ensureImage(postgresImage);
+        StartedContainer container = startContainer(Map.of(), profile,
+                "POSTGRES_DB=" + dbName, "POSTGRES_USER=" + user, "POSTGRES_PASSWORD=" + password);
+        return saveInstance(container.containerId(), container.hostPort(), dbName, user, password, profile);
+    }
+
+    private StartedContainer startContainer(Map<String, String> labels, ResourceProfile profile, String... env) {
         ExposedPort exposedPort = ExposedPort.tcp(5432);
         PortBinding portBinding = new PortBinding(Ports.Binding.empty(), exposedPort);
         HostConfig hostConfig = new HostConfig().withPortBindings(portBinding);
+        if (profile != null) {
+            // Swap equal to the memory limit, so the container can't swap
+            hostConfig.withMemory(profile.memoryBytes())
+                    .withMemorySwap(profile.memoryBytes())
+                    .withNanoCPUs(profile.nanoCpus())
+                    .withShmSize(profile.shmSizeBytes());
+        }
 
-        CreateContainerResponse container = dockerClient.createContainerCmd("postgres:13")
-                .withEnv("POSTGRES_DB=" + dbName, "POSTGRES_USER=" + user, "POSTGRES_PASSWORD=" + password)
+        CreateContainerCmd createCmd = dockerClient.createContainerCmd(postgresImage)
+                .withEnv(env)
+                .withLabels(labels)
                 .withExposedPorts(exposedPort)
-                .withHostConfig(hostConfig)
-                .exec();
+                .withHostConfig(hostConfig);
+        if (profile != null) {
+            createCmd.withCmd(profile.postgresCommand());
+        }
+        CreateContainerResponse container = createCmd.exec();
 
         String containerId = container.getId();
         dockerClient.startContainerCmd(containerId).exec();
 
         Ports.Binding[] bindings = dockerClient.inspectContainerCmd(containerId).exec().getNetworkSettings().getPorts().getBindings().get(exposedPort);
         String hostPortStr = bindings[0].getHostPortSpec();
-        int hostPort = Integer.parseInt(hostPortStr);
+        return new StartedContainer(containerId, Integer.parseInt(hostPortStr));
+    }
 
+    private DatabaseInstance saveInstance(String containerId, int hostPort, String dbName, String user, String password, ResourceProfile profile) {
         DatabaseInstance instance = new DatabaseInstance();
         instance.setContainerId(containerId);
         instance.setDbName(dbName);
@@ -97,25 +185,207 @@ public class DockerService {
         // to connect to the port exposed by the Docker container on the host.
         instance.setHost("localhost"); 
         instance.setPort(hostPort);
+        instance.setResourceProfile(profile != null ? profile.name() : null);
+
+        DatabaseInstance savedInstance = repository.save(instance);
+        // Drop any stale descriptor cached under this id before it is first used
+        connectionDescriptorResolver.invalidate(savedInstance.getId());
+        return savedInstance;
+    }
+
+    /**
+     * Makes sure the image exists locally, pulling it only when neither the presence cache nor the daemon has it.
+     */
+    public void ensureImage(String image) {
+        if (presentImages.contains(image)) {
+            return;
+        }
+        synchronized (pullLocks.computeIfAbsent(image, key -> new Object())) {
+            if (presentImages.contains(image)) {
+                return; // Pulled by another request while this one waited
+            }
+            try {
+                dockerClient.inspectImageCmd(image).exec();
+            } catch (NotFoundException e) {
+                System.out.println("Image " + image + " not found locally, pulling...");
+                try {
+                    dockerClient.pullImageCmd(image).start().awaitCompletion();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Failed while waiting for image " + image + " to pull", ie);
+                }
+                System.out.println("Image " + image + " is ready.");
+            }
+            presentImages.add(image);
+        }
+    }
+
+    // Pulls the image catalog on a background thread so the first create doesn't wait on the registry
+    private void prepullImagesAsync() {
+        Thread thread = new Thread(() -> {
+            for (String image : prepullImages) {
+                if (image.isBlank()) {
+                    continue;
+                }
+                try {
+                    ensureImage(image.trim());
+                } catch (Exception e) {
+                    System.err.println("Failed to pre-pull image " + image.trim() + ": " + e.getMessage());
+                }
+            }
+        }, "docker-image-prepull");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void startWarmPool() {
+        if (warmPoolSize <= 0) {
+            return;
+        }
+        warmPoolRefiller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "warm-pool-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        warmPoolRefiller.execute(this::removeOrphanedSpares);
+        warmPoolRefiller.scheduleWithFixedDelay(this::refillWarmPool, 0, warmPoolRefillIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // Runs only on the refiller thread, so spares are never started twice for the same slot
+    private void refillWarmPool() {
+        while (spares.size() < warmPoolSize && !Thread.currentThread().isInterrupted()) {
+            try {
+                ensureImage(postgresImage);
+                String adminPassword = Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes(24));
+                StartedContainer container = startContainer(Map.of(SPARE_LABEL, "true"), null,
+                        "POSTGRES_USER=" + SPARE_SUPERUSER, "POSTGRES_PASSWORD=" + adminPassword);
+                SpareContainer spare = new SpareContainer(container.containerId(), container.hostPort(), adminPassword);
+                if (!awaitSpareReady(spare)) {
+                    System.err.println("Warm container " + spare.containerId() + " did not become ready, removing it.");
+                    removeContainerQuietly(spare.containerId());
+                    return; // Try again on the next scheduled run
+                }
+                spares.addLast(spare);
+                System.out.println("Warm pool: " + spares.size() + "/" + warmPoolSize + " spare containers ready.");
+            } catch (Exception e) {
+                System.err.println("Failed to start a warm container: " + e.getMessage());
+                return;
+            }
+        }
+    }
 
-        return repository.save(instance);
+    private boolean awaitSpareReady(SpareContainer spare) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmPoolReadyTimeoutSeconds);
+        while (System.nanoTime() < deadline) {
+            // The image's init scripts run with TCP disabled, so a TCP connection means the final server is up
+            try (Connection conn = openSpareConnection(spare)) {
+                if (conn.isValid(5)) {
+                    return true;
+                }
+            } catch (SQLException e) {
+                // Not accepting connections yet
+            }
+            try {
+                Thread.sleep(250);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // The role gets the same superuser rights the image gives POSTGRES_USER on a cold create
+    private void claimSpare(SpareContainer spare, String dbName, String user, String password) throws SQLException {
+        try (Connection conn = openSpareConnection(spare);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE ROLE " + quoteIdentifier(user) + " WITH LOGIN SUPERUSER PASSWORD '" + password.replace("'", "''") + "'");
+            stmt.execute("CREATE DATABASE " + quoteIdentifier(dbName) + " OWNER " + quoteIdentifier(user));
+        }
+    }
+
+    private Connection openSpareConnection(SpareContainer spare) throws SQLException {
+        String url = String.format("jdbc:postgresql://localhost:%d/postgres", spare.hostPort());
+        return DriverManager.getConnection(url, SPARE_SUPERUSER, spare.adminPassword());
+    }
+
+    // Spares left behind by a previous run can't be claimed, since their superuser password was never stored
+    private void removeOrphanedSpares() {
+        try {
+            Set<String> registered = repository.findAll().stream()
+                    .map(DatabaseInstance::getContainerId)
+                    .collect(Collectors.toSet());
+            dockerClient.listContainersCmd()
+                    .withShowAll(true)
+                    .withLabelFilter(Map.of(SPARE_LABEL, "true"))
+                    .exec()
+                    .stream()
+                    .filter(container -> !registered.contains(container.getId()))
+                    .forEach(container -> removeContainerQuietly(container.getId()));
+        } catch (Exception e) {
+            System.err.println("Failed to clean up orphaned warm containers: " + e.getMessage());
+        }
+    }
+
+    private void removeContainerQuietly(String containerId) {
+        try {
+            dockerClient.removeContainerCmd(containerId).withForce(true).exec();
+        } catch (Exception e) {
+            System.err.println("Failed to remove container " + containerId + ": " + e.getMessage());
+        }
+    }
+
+    private String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        secureRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (warmPoolRefiller == null) {
+            return;
+        }
+        warmPoolRefiller.shutdownNow();
+        SpareContainer spare;
+        while ((spare = spares.pollFirst()) != null) {
+            removeContainerQuietly(spare.containerId());
+        }
     }
 
     public void removeContainer(String containerId) {
+        removeContainer(containerId, defaultStopTimeoutSeconds, false);
+    }
+
+    /**
+     * Stops and removes the container, giving Postgres stopTimeoutSeconds to shut down cleanly.
+     * With kill, the container is killed and removed at once, which is fine for disposable instances.
+     */
+    public void removeContainer(String containerId, int stopTimeoutSeconds, boolean kill) {
         if (!isDockerConnected) {
             throw new IllegalStateException("Cannot remove container: Not connected to Docker daemon.");
         }
-        try {
-            dockerClient.stopContainerCmd(containerId).exec();
-        } catch (NotFoundException e) {
-            System.out.println("Container " + containerId + " not found, maybe already stopped or removed.");
+        if (!kill) {
+            try {
+                dockerClient.stopContainerCmd(containerId).withTimeout(stopTimeoutSeconds).exec();
+            } catch (NotFoundException e) {
+                System.out.println("Container " + containerId + " not found, maybe already stopped or removed.");
+            }
         }
 
         try {
-            dockerClient.removeContainerCmd(containerId).exec();
+            dockerClient.removeContainerCmd(containerId).withForce(kill).exec();
             System.out.println("Container " + containerId + " removed successfully.");
         } catch (NotFoundException e) {
             System.out.println("Container " + containerId + " not found, maybe already removed.");
         }
     }
+
+    private record StartedContainer(String containerId, int hostPort) {}
+
+    private record SpareContainer(String containerId, int hostPort, String adminPassword) {}
 }
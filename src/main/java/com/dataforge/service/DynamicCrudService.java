@@ -1,16 +1,20 @@
 package com.dataforge.service;
 
+import com.dataforge.dto.BulkChunkResult;
+import com.dataforge.dto.BulkInsertResponse;
+import com.dataforge.dto.ColumnDefinition;
 import com.dataforge.exception.InvalidInputException;
-import com.dataforge.exception.ResourceNotFoundException;
-import com.dataforge.model.DatabaseInstance;
-import com.dataforge.repository.DatabaseInstanceRepository;
-import com.dataforge.util.EncryptionUtil;
+import com.dataforge.util.ColumnValueBinder;
+import com.dataforge.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -19,159 +23,435 @@ import java.util.stream.Collectors;
 public class DynamicCrudService {
 
     @Autowired
-    private DatabaseInstanceRepository instanceRepository;
+    private ConnectionPoolRegistry connectionPoolRegistry;
     @Autowired
-    private EncryptionUtil encryptionUtil;
+    private TableManagerService tableManagerService;
+    @Autowired
+    private ColumnValueBinder columnValueBinder;
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Value("${dataforge.bulk.max-chunk-size:5000}")
+    private int maxChunkSize;
+
+    @Value("${dataforge.query.fetch-size:1000}")
+    private int fetchSize;
 
     public void createRecord(Long dbId, String tableName, Map<String, Object> record) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
+        Map<String, ColumnDefinition> tableColumns = loadColumns(dbId, tableName);
+        List<TypedParam> params = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        record.forEach((key, value) -> {
+            ColumnDefinition column = requireColumn(tableColumns, tableName, key);
+            columns.add(column.name());
+            params.add(new TypedParam(column, value));
+        });
 
-        String columns = String.join(", ", record.keySet());
-        String placeholders = record.keySet().stream().map(k -> "?").collect(Collectors.joining(", "));
-        String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, columns, placeholders);
+        String placeholders = columns.stream().map(k -> "?").collect(Collectors.joining(", "));
+        String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, String.join(", ", columns), placeholders);
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            int i = 1;
-            for (Object value : record.values()) {
-                pstmt.setObject(i++, value);
-            }
+            bindParams(pstmt, params);
             pstmt.executeUpdate();
+            queryResultCache.invalidateTable(dbId, tableName);
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to create record in table '" + tableName + "': " + e.getMessage());
         }
     }
 
-    public List<Map<String, Object>> readRecords(Long dbId, String tableName, int page, int limit, Map<String, String> filters, String orderByColumn, String orderDirection) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-        List<Map<String, Object>> records = new ArrayList<>();
+    /**
+     * Inserts a stream of records in chunks. Each chunk runs in its own transaction, and within a chunk
+     * records are grouped by column set and written with one JDBC batch per group.
+     * A failed chunk is rolled back and reported; the remaining chunks are still attempted.
+     */
+    public BulkInsertResponse bulkInsert(Long dbId, String tableName, Iterator<Map<String, Object>> records, int chunkSize) {
+        if (chunkSize < 1 || chunkSize > maxChunkSize) {
+            throw new InvalidInputException("Chunk size must be between 1 and " + maxChunkSize + ".");
+        }
+
+        Map<String, ColumnDefinition> tableColumns = loadColumns(dbId, tableName);
+        List<BulkChunkResult> chunkResults = new ArrayList<>();
+        int totalRows = 0;
+        int insertedRows = 0;
 
-        StringBuilder sqlBuilder = new StringBuilder(String.format("SELECT * FROM %s", tableName));
-        List<Object> params = new ArrayList<>();
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
+            conn.setAutoCommit(false);
+            boolean chunkOpen = false;
+            try {
+                List<Map<String, Object>> chunk = new ArrayList<>(chunkSize);
+                boolean hasMore = true;
+                while (hasMore) {
+                    String readError = null;
+                    try {
+                        while (chunk.size() < chunkSize && records.hasNext()) {
+                            chunk.add(records.next());
+                        }
+                        hasMore = chunk.size() == chunkSize && records.hasNext();
+                    } catch (RuntimeException e) {
+                        // Malformed input: report what was read so far and stop
+                        readError = "Malformed record in input: " + e.getMessage();
+                        hasMore = false;
+                    }
 
-        if (filters != null && !filters.isEmpty()) {
-            sqlBuilder.append(" WHERE ");
-            String whereClause = filters.entrySet().stream()
-                    .map(entry -> {
-                        params.add(entry.getValue());
-                        return String.format("%s = ?", entry.getKey());
-                    })
-                    .collect(Collectors.joining(" AND "));
-            sqlBuilder.append(whereClause);
+                    if (readError != null) {
+                        totalRows += chunk.size();
+                        chunkResults.add(new BulkChunkResult(chunkResults.size(), chunk.size(), false, readError));
+                        break;
+                    }
+                    if (chunk.isEmpty()) {
+                        break;
+                    }
+
+                    totalRows += chunk.size();
+                    chunkOpen = true;
+                    try {
+                        insertChunk(conn, tableName, tableColumns, chunk);
+                        conn.commit();
+                        chunkOpen = false;
+                        insertedRows += chunk.size();
+                        chunkResults.add(new BulkChunkResult(chunkResults.size(), chunk.size(), true, null));
+                    } catch (SQLException | RuntimeException e) {
+                        // Any failure, including one from binding a value, fails only this chunk
+                        chunkResults.add(new BulkChunkResult(chunkResults.size(), chunk.size(), false, e.getMessage()));
+                        // A failed rollback leaves the connection unusable, so the remaining chunks are not attempted
+                        conn.rollback();
+                        chunkOpen = false;
+                    }
+                    chunk.clear();
+                }
+            } finally {
+                if (chunkOpen) {
+                    // Restoring autocommit would otherwise commit the half-written chunk
+                    try {
+                        conn.rollback();
+                        chunkOpen = false;
+                    } catch (SQLException rollbackError) {
+                        System.err.println("Failed to roll back bulk insert chunk on DB ID " + dbId + ": " + rollbackError.getMessage());
+                    }
+                }
+                if (!chunkOpen) {
+                    conn.setAutoCommit(true);
+                } // Otherwise the pool rolls the dirty connection back when it is returned
+                queryResultCache.invalidateTable(dbId, tableName); // Some chunks may have been committed
+            }
+        } catch (SQLException e) {
+            throw new InvalidInputException("Failed to bulk insert records into table '" + tableName + "': " + e.getMessage());
+        }
+
+        return new BulkInsertResponse(totalRows, insertedRows, totalRows - insertedRows, chunkResults);
+    }
+
+    /**
+     * Reads a page of records. Each filter value is either a plain value (equality) or {@code op.value} with op one of
+     * eq, gt, gte, lt, lte, like, in ({@code in.a,b,c}), between ({@code between.low,high}) or isnull ({@code isnull.true}).
+     * A column may be filtered more than once. {@code fields} limits the selected columns; null selects all.
+     * The query is executed before returning, and its rows are left open for the caller to stream.
+     */
+    public ResultSetStream readRecords(Long dbId, String tableName, int page, int limit, Map<String, List<String>> filters, List<String> fields, String orderByColumn, String orderDirection) {
+        Map<String, ColumnDefinition> tableColumns = loadColumns(dbId, tableName);
+        String projection = buildProjection(tableColumns, tableName, fields, List.of());
+        StringBuilder sqlBuilder = new StringBuilder(String.format("SELECT %s FROM %s", projection, tableName));
+        List<TypedParam> params = new ArrayList<>();
+
+        List<String> conditions = buildFilterConditions(tableColumns, tableName, filters, params);
+        if (!conditions.isEmpty()) {
+            sqlBuilder.append(" WHERE ").append(String.join(" AND ", conditions));
         }
 
         if (orderByColumn != null && !orderByColumn.isBlank()) {
-            sqlBuilder.append(" ORDER BY ").append(orderByColumn);
-            if (orderDirection != null && (orderDirection.equalsIgnoreCase("ASC") || orderDirection.equalsIgnoreCase("DESC"))) {
-                sqlBuilder.append(" ").append(orderDirection.toUpperCase());
-            } else {
-                sqlBuilder.append(" ASC");
-            }
+            String orderColumn = requireColumn(tableColumns, tableName, orderByColumn).name();
+            sqlBuilder.append(" ORDER BY ").append(orderColumn).append(" ").append(normalizeDirection(orderDirection));
         }
 
         sqlBuilder.append(String.format(" LIMIT %d OFFSET %d", limit, (page - 1) * limit));
         String sql = sqlBuilder.toString();
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try {
+            return openStream(dbId, sql, params);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read records from table '" + tableName + "': " + e.getMessage());
+        }
+    }
 
-            for (int i = 0; i < params.size(); i++) {
-                pstmt.setObject(i + 1, params.get(i));
+    /**
+     * Reads a page in keyset (seek) mode. Rows are ordered by the optional orderBy column followed by the
+     * primary key, and each page continues from the key of the previous page's last row with a row-value
+     * predicate, so deep pages cost the same as the first one. Like readRecords, the rows are left open for
+     * the caller to stream; the next cursor is built once the page's last row has been written.
+     */
+    public KeysetPageStream readRecordsKeyset(Long dbId, String tableName, int limit, Map<String, List<String>> filters, List<String> fields, String orderByColumn, String orderDirection, String cursor) {
+        if (limit < 1) {
+            throw new InvalidInputException("Limit must be at least 1.");
+        }
+        Map<String, ColumnDefinition> tableColumns = loadColumns(dbId, tableName);
+        if (tableColumns.values().stream().noneMatch(ColumnDefinition::isPrimaryKey)) {
+            throw new InvalidInputException("Keyset pagination requires table '" + tableName + "' to have a primary key.");
+        }
+
+        List<ColumnDefinition> keyColumnDefinitions = new ArrayList<>();
+        if (orderByColumn != null && !orderByColumn.isBlank()) {
+            ColumnDefinition orderColumn = requireColumn(tableColumns, tableName, orderByColumn);
+            // Row-value comparisons never match NULL, so a nullable ordering column would skip or repeat rows
+            if (orderColumn.isNullable() && !orderColumn.isPrimaryKey()) {
+                throw new InvalidInputException("Keyset pagination can't order by nullable column '" + orderColumn.name() + "'; use offset pagination or a NOT NULL column.");
             }
+            keyColumnDefinitions.add(orderColumn);
+        }
+        tableColumns.values().stream()
+                .filter(ColumnDefinition::isPrimaryKey)
+                .filter(pk -> !keyColumnDefinitions.contains(pk))
+                .forEach(keyColumnDefinitions::add);
+        List<String> keyColumns = keyColumnDefinitions.stream().map(ColumnDefinition::name).toList();
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
+        String direction = normalizeDirection(orderDirection);
+        List<TypedParam> params = new ArrayList<>();
+        List<String> conditions = buildFilterConditions(tableColumns, tableName, filters, params);
 
-                while (rs.next()) {
-                    Map<String, Object> record = new HashMap<>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        record.put(metaData.getColumnName(i), rs.getObject(i));
-                    }
-                    records.add(record);
-                }
+        if (cursor != null && !cursor.isBlank()) {
+            List<String> cursorValues = KeysetCursor.decode(cursor, keyColumns, direction);
+            String placeholders = keyColumns.stream().map(k -> "?").collect(Collectors.joining(", "));
+            conditions.add(String.format("(%s) %s (%s)", String.join(", ", keyColumns), direction.equals("ASC") ? ">" : "<", placeholders));
+            for (int i = 0; i < keyColumnDefinitions.size(); i++) {
+                params.add(new TypedParam(keyColumnDefinitions.get(i), cursorValues.get(i)));
             }
+        }
+
+        // The key columns are always selected since the next cursor is built from them
+        String projection = buildProjection(tableColumns, tableName, fields, keyColumns);
+        StringBuilder sqlBuilder = new StringBuilder(String.format("SELECT %s FROM %s", projection, tableName));
+        if (!conditions.isEmpty()) {
+            sqlBuilder.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sqlBuilder.append(" ORDER BY ")
+                .append(keyColumns.stream().map(column -> column + " " + direction).collect(Collectors.joining(", ")));
+        // Fetch one extra row to know whether another page follows
+        sqlBuilder.append(String.format(" LIMIT %d", limit + 1));
+        String sql = sqlBuilder.toString();
+
+        try {
+            return new KeysetPageStream(openStream(dbId, sql, params), limit, keyColumns,
+                    keyValues -> encodeCursor(keyValues, keyColumnDefinitions, direction));
         } catch (SQLException e) {
             throw new RuntimeException("Failed to read records from table '" + tableName + "': " + e.getMessage());
         }
-        return records;
     }
 
     public int updateRecord(Long dbId, String tableName, Object recordId, Map<String, Object> updates) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
+        Map<String, ColumnDefinition> tableColumns = loadColumns(dbId, tableName);
         StringBuilder sqlBuilder = new StringBuilder(String.format("UPDATE %s SET ", tableName));
-        List<Object> params = new ArrayList<>();
+        List<TypedParam> params = new ArrayList<>();
 
         String setClause = updates.keySet().stream()
                 .map(entry -> {
-                    params.add(updates.get(entry));
-                    return String.format("%s = ?", entry);
+                    ColumnDefinition column = requireColumn(tableColumns, tableName, entry);
+                    params.add(new TypedParam(column, updates.get(entry)));
+                    return String.format("%s = ?", column.name());
                 })
                 .collect(Collectors.joining(", "));
         sqlBuilder.append(setClause);
 
         sqlBuilder.append(" WHERE id = ?");
-        params.add(parseId(recordId)); // Use the parsed ID
+        params.add(new TypedParam(requireColumn(tableColumns, tableName, "id"), recordId));
 
         String sql = sqlBuilder.toString();
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            for (int i = 0; i < params.size(); i++) {
-                pstmt.setObject(i + 1, params.get(i));
-            }
-            return pstmt.executeUpdate();
+            bindParams(pstmt, params);
+            int affectedRows = pstmt.executeUpdate();
+            queryResultCache.invalidateTable(dbId, tableName);
+            return affectedRows;
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to update record in table '" + tableName + "': " + e.getMessage());
         }
     }
 
     public int deleteRecord(Long dbId, String tableName, Object recordId) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
+        ColumnDefinition idColumn = requireColumn(loadColumns(dbId, tableName), tableName, "id");
         String sql = String.format("DELETE FROM %s WHERE id = ?", tableName);
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setObject(1, parseId(recordId)); // Use the parsed ID
-            return pstmt.executeUpdate();
+            columnValueBinder.bind(pstmt, 1, idColumn, recordId);
+            int affectedRows = pstmt.executeUpdate();
+            queryResultCache.invalidateTable(dbId, tableName);
+            return affectedRows;
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to delete record from table '" + tableName + "': " + e.getMessage());
         }
     }
 
-    private Object parseId(Object originalId) {
-        if (originalId instanceof String) {
-            try {
-                // Try to parse it as a Long (which covers Integers)
-                return Long.parseLong((String) originalId);
-            } catch (NumberFormatException e) {
-                // If it fails, it's probably a genuine string ID (like a UUID), so we return it as is.
-                return originalId;
+    private void insertChunk(Connection conn, String tableName, Map<String, ColumnDefinition> tableColumns, List<Map<String, Object>> chunk) throws SQLException {
+        // Group records by their column set so each group can share one prepared INSERT
+        Map<List<String>, List<Map<String, Object>>> recordsByColumns = new LinkedHashMap<>();
+        for (Map<String, Object> record : chunk) {
+            if (record == null || record.isEmpty()) {
+                throw new InvalidInputException("Record data cannot be empty.");
+            }
+            recordsByColumns.computeIfAbsent(record.keySet().stream().sorted().toList(), k -> new ArrayList<>()).add(record);
+        }
+
+        for (Map.Entry<List<String>, List<Map<String, Object>>> group : recordsByColumns.entrySet()) {
+            List<String> keys = group.getKey();
+            List<ColumnDefinition> columns = keys.stream().map(key -> requireColumn(tableColumns, tableName, key)).toList();
+            String placeholders = columns.stream().map(k -> "?").collect(Collectors.joining(", "));
+            String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName,
+                    columns.stream().map(ColumnDefinition::name).collect(Collectors.joining(", ")), placeholders);
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Map<String, Object> record : group.getValue()) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        columnValueBinder.bind(pstmt, i + 1, columns.get(i), record.get(keys.get(i)));
+                    }
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    // Columns of the table by name, from the cached schema
+    private Map<String, ColumnDefinition> loadColumns(Long dbId, String tableName) {
+        return tableManagerService.getTableSchema(dbId, tableName).columns().stream()
+                .collect(Collectors.toMap(ColumnDefinition::name, c -> c, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    private ColumnDefinition requireColumn(Map<String, ColumnDefinition> tableColumns, String tableName, String name) {
+        return TableManagerService.requireColumn(tableColumns, tableName, name);
+    }
+
+    private String buildProjection(Map<String, ColumnDefinition> tableColumns, String tableName, List<String> fields, List<String> requiredColumns) {
+        if (fields == null || fields.isEmpty()) {
+            return "*";
+        }
+        List<String> columns = new ArrayList<>();
+        for (String field : fields) {
+            String column = requireColumn(tableColumns, tableName, field.trim()).name();
+            if (!columns.contains(column)) {
+                columns.add(column);
+            }
+        }
+        requiredColumns.stream().filter(column -> !columns.contains(column)).forEach(columns::add);
+        return String.join(", ", columns);
+    }
+
+    private List<String> buildFilterConditions(Map<String, ColumnDefinition> tableColumns, String tableName, Map<String, List<String>> filters, List<TypedParam> params) {
+        List<String> conditions = new ArrayList<>();
+        if (filters != null) {
+            filters.forEach((key, values) -> {
+                ColumnDefinition column = requireColumn(tableColumns, tableName, key);
+                for (String value : values) {
+                    conditions.add(buildFilterCondition(column, value, params));
+                }
+            });
+        }
+        return conditions;
+    }
+
+    // Compiles one "op.value" filter to a sargable predicate on the bare column
+    private String buildFilterCondition(ColumnDefinition column, String expression, List<TypedParam> params) {
+        int dot = expression.indexOf('.');
+        String operator = dot > 0 ? expression.substring(0, dot).toLowerCase() : "";
+        String operand = dot > 0 ? expression.substring(dot + 1) : expression;
+        String name = column.name();
+
+        switch (operator) {
+            case "eq", "gt", "gte", "lt", "lte" -> {
+                params.add(new TypedParam(column, operand));
+                String sqlOperator = switch (operator) {
+                    case "gt" -> ">";
+                    case "gte" -> ">=";
+                    case "lt" -> "<";
+                    case "lte" -> "<=";
+                    default -> "=";
+                };
+                return String.format("%s %s ?", name, sqlOperator);
+            }
+            case "like" -> {
+                // LIKE compares text, so the pattern is bound as text and non-text columns are cast to text
+                params.add(new TypedParam(new ColumnDefinition(name, "text", false, true, false), operand));
+                return isTextColumn(column) ? String.format("%s LIKE ?", name) : String.format("CAST(%s AS text) LIKE ?", name);
+            }
+            case "in" -> {
+                List<String> items = List.of(operand.split(","));
+                items.forEach(item -> params.add(new TypedParam(column, item)));
+                return String.format("%s IN (%s)", name, items.stream().map(item -> "?").collect(Collectors.joining(", ")));
+            }
+            case "between" -> {
+                String[] bounds = operand.split(",");
+                if (bounds.length != 2) {
+                    throw new InvalidInputException("Filter 'between' on column '" + name + "' needs two comma-separated bounds.");
+                }
+                params.add(new TypedParam(column, bounds[0]));
+                params.add(new TypedParam(column, bounds[1]));
+                return String.format("%s BETWEEN ? AND ?", name);
+            }
+            case "isnull" -> {
+                if (!operand.equalsIgnoreCase("true") && !operand.equalsIgnoreCase("false")) {
+                    throw new InvalidInputException("Filter 'isnull' on column '" + name + "' must be isnull.true or isnull.false.");
+                }
+                return String.format("%s IS %sNULL", name, Boolean.parseBoolean(operand) ? "" : "NOT ");
+            }
+            default -> {
+                // No recognised operator: plain equality on the whole value, as before
+                params.add(new TypedParam(column, expression));
+                return String.format("%s = ?", name);
             }
         }
-        // If it's already a number, return it as is.
-        return originalId;
     }
 
-    private DatabaseInstance findInstance(Long dbId) {
-        return instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
+    // Text columns are compared directly so an index on the column can still serve the LIKE
+    private boolean isTextColumn(ColumnDefinition column) {
+        String type = column.dataType().toLowerCase();
+        return type.startsWith("varchar") || type.startsWith("char") || type.startsWith("bpchar")
+                || type.equals("text") || type.equals("citext") || type.equals("name");
     }
 
-    private String buildJdbcUrl(DatabaseInstance instance) {
-        return String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
+    private void bindParams(PreparedStatement pstmt, List<TypedParam> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            columnValueBinder.bind(pstmt, i + 1, params.get(i).column(), params.get(i).value());
+        }
+    }
+
+    // Executes the query with a fetch size inside a transaction so pgjdbc reads it through a server-side cursor
+    private ResultSetStream openStream(Long dbId, String sql, List<TypedParam> params) throws SQLException {
+        Connection conn = connectionPoolRegistry.getConnection(dbId);
+        try {
+            conn.setAutoCommit(false);
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(fetchSize);
+            bindParams(pstmt, params);
+            return new ResultSetStream(conn, pstmt, pstmt.executeQuery(), -1);
+        } catch (SQLException | RuntimeException e) {
+            // Closes the connection (and frees its bulkhead slot) even if the rollback fails
+            try (conn) {
+                conn.rollback();
+            } catch (SQLException cleanupError) {
+                e.addSuppressed(cleanupError);
+            }
+            throw e;
+        }
     }
+
+    private String normalizeDirection(String orderDirection) {
+        return orderDirection != null && orderDirection.equalsIgnoreCase("DESC") ? "DESC" : "ASC";
+    }
+
+    // The cursor carries the key column names and the last row's key values as text
+    private String encodeCursor(List<Object> keyValues, List<ColumnDefinition> keyColumns, String direction) {
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            ColumnDefinition column = keyColumns.get(i);
+            Object value = keyValues.get(i);
+            names.add(column.name());
+            values.add(value == null ? null : columnValueBinder.toText(column, value));
+        }
+        return KeysetCursor.encode(names, direction, values);
+    }
+
+    // A value bound to a statement parameter together with the column it is compared with or written to
+    private record TypedParam(ColumnDefinition column, Object value) {}
 }
@@ -0,0 +1,164 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.FanOutInstanceResult;
+import com.dataforge.dto.FanOutQueryResponse;
+import com.dataforge.dto.SqlQueryResponse;
+import com.dataforge.model.DatabaseInstance;
+import com.dataforge.repository.DatabaseInstanceRepository;
+import com.dataforge.util.BoundSql;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one read-only statement against many instances at once, one virtual thread per instance.
+ * Each instance's statement is cancelled by the running-query registry when its timeout elapses,
+ * so a slow instance only fails its own part of the result.
+ */
+@Service
+public class FanOutQueryService {
+
+    // Prefixed so it can't be mistaken for a result column of the same name
+    private static final String DB_ID_COLUMN = "@dbId";
+
+    @Autowired
+    private QueryService queryService;
+
+    @Autowired
+    private DatabaseInstanceRepository instanceRepository;
+
+    // Instances queried at the same time; they usually share one Docker host
+    @Value("${dataforge.fan-out.max-concurrency:16}")
+    private int maxConcurrency;
+
+    // Every instance's rows are buffered until all have answered, so both the per-instance and merged counts are capped;
+    // the total is reserved up front by each instance, so no more than max-total-rows are ever held at once
+    @Value("${dataforge.fan-out.max-rows-per-instance:10000}")
+    private int maxRowsPerInstance;
+
+    @Value("${dataforge.fan-out.max-total-rows:100000}")
+    private int maxTotalRows;
+
+    public FanOutQueryResponse execute(List<Long> dbIds, BoundSql query, Integer timeoutSeconds) {
+        List<Long> targets = dbIds == null || dbIds.isEmpty()
+                ? instanceRepository.findAll().stream().map(DatabaseInstance::getId).toList()
+                : dbIds.stream().distinct().toList();
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicInteger remainingRows = new AtomicInteger(maxTotalRows);
+        Map<Long, Future<InstanceOutcome>> futures = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Long dbId : targets) {
+                futures.put(dbId, executor.submit(() -> {
+                    permits.acquire();
+                    long start = System.nanoTime();
+                    int reserved = remainingRows.getAndUpdate(remaining -> remaining - Math.min(maxRowsPerInstance, remaining));
+                    reserved = Math.min(maxRowsPerInstance, reserved);
+                    int kept = 0;
+                    try {
+                        if (reserved == 0) {
+                            // Earlier instances used up the total; skipping the query keeps the reservation honest
+                            return new InstanceOutcome(null, true, null, elapsedMs(start));
+                        }
+                        // One extra row tells a result that hit the cap from one that fit exactly
+                        SqlQueryResponse response = queryService.executeReadOnly(dbId, query, timeoutSeconds, reserved + 1);
+                        if (!response.isQueryResult() || response.rows().size() <= reserved) {
+                            kept = response.rows() == null ? 0 : response.rows().size();
+                            return new InstanceOutcome(response, false, null, elapsedMs(start));
+                        }
+                        kept = reserved;
+                        SqlQueryResponse trimmed = SqlQueryResponse.forSelect(response.columns(), List.copyOf(response.rows().subList(0, reserved)));
+                        return new InstanceOutcome(trimmed, true, null, elapsedMs(start));
+                    } catch (Exception e) {
+                        return new InstanceOutcome(null, false, e.getMessage(), elapsedMs(start));
+                    } finally {
+                        remainingRows.addAndGet(reserved - kept); // Hand back what this instance didn't use
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        List<String> columns = null;
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<FanOutInstanceResult> instances = new ArrayList<>(targets.size());
+        boolean anyTruncated = false;
+        for (Map.Entry<Long, Future<InstanceOutcome>> entry : futures.entrySet()) {
+            Long dbId = entry.getKey();
+            InstanceOutcome outcome = outcomeOf(entry.getValue());
+            SqlQueryResponse response = outcome.response();
+            if (response == null && outcome.error() == null) {
+                anyTruncated = true;
+                instances.add(new FanOutInstanceResult(dbId, true, 0, Boolean.TRUE, outcome.elapsedMs(), null));
+                continue;
+            }
+            if (response == null) {
+                instances.add(new FanOutInstanceResult(dbId, false, null, null, outcome.elapsedMs(), outcome.error()));
+                continue;
+            }
+            if (!response.isQueryResult()) {
+                instances.add(new FanOutInstanceResult(dbId, false, null, null, outcome.elapsedMs(), "The statement did not return rows."));
+                continue;
+            }
+            if (response.columns().contains(DB_ID_COLUMN)) {
+                instances.add(new FanOutInstanceResult(dbId, false, null, null, outcome.elapsedMs(),
+                        "The result has a column named " + DB_ID_COLUMN + ", which is reserved for the instance id."));
+                continue;
+            }
+            if (columns == null) {
+                columns = response.columns();
+            } else if (!columns.equals(response.columns())) {
+                instances.add(new FanOutInstanceResult(dbId, false, null, null, outcome.elapsedMs(),
+                        "Returned columns " + response.columns() + " instead of " + columns + "."));
+                continue;
+            }
+            List<Map<String, Object>> instanceRows = response.rows();
+            anyTruncated |= outcome.truncated();
+            for (Map<String, Object> row : instanceRows) {
+                Map<String, Object> tagged = new LinkedHashMap<>();
+                tagged.put(DB_ID_COLUMN, dbId);
+                tagged.putAll(row);
+                rows.add(tagged);
+            }
+            instances.add(new FanOutInstanceResult(dbId, true, instanceRows.size(), outcome.truncated() ? Boolean.TRUE : null,
+                    outcome.elapsedMs(), null));
+        }
+
+        List<String> mergedColumns = new ArrayList<>();
+        mergedColumns.add(DB_ID_COLUMN);
+        if (columns != null) {
+            mergedColumns.addAll(columns);
+        }
+        boolean success = instances.stream().allMatch(FanOutInstanceResult::success);
+        return new FanOutQueryResponse(success, anyTruncated, mergedColumns, rows, instances);
+    }
+
+    private InstanceOutcome outcomeOf(Future<InstanceOutcome> future) {
+        try {
+            return future.get(); // The executor has already waited for every task
+        } catch (ExecutionException e) {
+            return new InstanceOutcome(null, false, e.getCause().getMessage(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new InstanceOutcome(null, false, "Interrupted.", 0);
+        }
+    }
+
+    private long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // Neither a response nor an error means the instance was skipped because the total row cap was used up
+    private record InstanceOutcome(SqlQueryResponse response, boolean truncated, String error, long elapsedMs) {}
+}
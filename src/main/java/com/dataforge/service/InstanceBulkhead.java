@@ -0,0 +1,112 @@
+package com.dataforge.service;
+
+import com.dataforge.exception.InstanceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the concurrent JDBC work per instance. A request that finds every slot taken waits in a bounded
+ * queue for at most the queue timeout; when the queue is full it is rejected at once, so one busy tenant
+ * can't tie up every request thread waiting on its pool.
+ * Publishes dataforge.bulkhead.active, dataforge.bulkhead.queue.depth and dataforge.bulkhead.rejected per dbId.
+ */
+@Service
+public class InstanceBulkhead {
+
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Defaults to the pool size, so requests wait here instead of inside HikariCP
+    @Value("${dataforge.bulkhead.max-concurrent:${dataforge.pool.max-size:10}}")
+    private int maxConcurrent;
+
+    @Value("${dataforge.bulkhead.max-queue:20}")
+    private int maxQueue;
+
+    @Value("${dataforge.bulkhead.queue-timeout-ms:2000}")
+    private long queueTimeoutMs;
+
+    @Value("${dataforge.bulkhead.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    /**
+     * Takes a slot for the instance, waiting in its queue if needed. Every successful call must be
+     * paired with a {@link #release(Long)}.
+     */
+    public void acquire(Long dbId) {
+        Lane lane = lanes.computeIfAbsent(dbId, this::createLane);
+        if (lane.permits.tryAcquire()) {
+            return;
+        }
+        if (lane.waiting.incrementAndGet() > maxQueue) {
+            lane.waiting.decrementAndGet();
+            lane.rejectedQueueFull.increment();
+            throw new InstanceBusyException("Database instance " + dbId + " is busy: " + maxQueue + " requests are already waiting.", true, retryAfterSeconds);
+        }
+        try {
+            if (!lane.permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                lane.rejectedTimeout.increment();
+                throw new InstanceBusyException("Database instance " + dbId + " is busy: no connection slot freed up within " + queueTimeoutMs + " ms.", false, retryAfterSeconds);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstanceBusyException("Interrupted while waiting for database instance " + dbId + ".", false, retryAfterSeconds);
+        } finally {
+            lane.waiting.decrementAndGet();
+        }
+    }
+
+    public void release(Long dbId) {
+        Lane lane = lanes.get(dbId);
+        if (lane != null) {
+            lane.permits.release();
+        }
+    }
+
+    // Called when an instance is deleted; slots still held are simply dropped with the lane
+    public void remove(Long dbId) {
+        Lane lane = lanes.remove(dbId);
+        if (lane != null) {
+            lane.meters.forEach(meterRegistry::remove);
+        }
+    }
+
+    private Lane createLane(Long dbId) {
+        Semaphore permits = new Semaphore(maxConcurrent, true); // Fair, so queued requests are served in order
+        AtomicInteger waiting = new AtomicInteger();
+        String tag = String.valueOf(dbId);
+        Gauge active = Gauge.builder("dataforge.bulkhead.active", permits, p -> maxConcurrent - p.availablePermits())
+                .description("JDBC slots in use for the instance")
+                .tag("dbId", tag)
+                .register(meterRegistry);
+        Gauge queueDepth = Gauge.builder("dataforge.bulkhead.queue.depth", waiting, AtomicInteger::get)
+                .description("Requests waiting for a JDBC slot for the instance")
+                .tag("dbId", tag)
+                .register(meterRegistry);
+        Counter rejectedQueueFull = Counter.builder("dataforge.bulkhead.rejected")
+                .description("Requests turned away by the instance's bulkhead")
+                .tags("dbId", tag, "reason", "queue_full")
+                .register(meterRegistry);
+        Counter rejectedTimeout = Counter.builder("dataforge.bulkhead.rejected")
+                .description("Requests turned away by the instance's bulkhead")
+                .tags("dbId", tag, "reason", "timeout")
+                .register(meterRegistry);
+        return new Lane(permits, waiting, rejectedQueueFull, rejectedTimeout, List.of(active, queueDepth, rejectedQueueFull, rejectedTimeout));
+    }
+
+    private record Lane(Semaphore permits, AtomicInteger waiting, Counter rejectedQueueFull, Counter rejectedTimeout, List<Meter> meters) {}
+}
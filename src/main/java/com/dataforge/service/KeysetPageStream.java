@@ -0,0 +1,26 @@
+package com.dataforge.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An executed keyset page query whose rows are still open, like {@link ResultSetStream}. The query fetches
+ * {@code limit + 1} rows; the extra row only signals that another page follows.
+ *
+ * @param rows          The open result.
+ * @param limit         The number of rows to return.
+ * @param keyColumns    The key columns, in ORDER BY order.
+ * @param cursorEncoder Builds the next cursor from the key values of the page's last row.
+ */
+public record KeysetPageStream(
+    ResultSetStream rows,
+    int limit,
+    List<String> keyColumns,
+    Function<List<Object>, String> cursorEncoder
+) implements AutoCloseable {
+
+    @Override
+    public void close() {
+        rows.close();
+    }
+}
@@ -0,0 +1,256 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.ConnectionDescriptor;
+import com.dataforge.dto.CreateDatabaseRequest;
+import com.dataforge.dto.ProvisioningJobStatus;
+import com.dataforge.exception.ResourceNotFoundException;
+import com.dataforge.model.DatabaseInstance;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Creates managed instances in the background so POST /databases doesn't hold a request thread through the
+ * image pull, container start and initdb. A job only becomes READY once Postgres accepts connections:
+ * first the mapped port must accept TCP, then a JDBC connection must pass isValid. The TCP check alone
+ * isn't enough, because Docker's port proxy accepts connections before the server inside is listening.
+ */
+@Service
+public class ProvisioningService {
+
+    public enum ProvisioningState { PENDING, READY, FAILED }
+
+    private final Map<String, ProvisioningJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    @Autowired
+    private DockerService dockerService;
+
+    @Autowired
+    private DatabaseInstanceService databaseInstanceService;
+
+    @Autowired
+    private ConnectionDescriptorResolver connectionDescriptorResolver;
+
+    @Value("${dataforge.provisioning.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${dataforge.provisioning.max-pending:50}")
+    private int maxPending;
+
+    @Value("${dataforge.provisioning.ready-timeout-seconds:60}")
+    private long readyTimeoutSeconds;
+
+    @Value("${dataforge.provisioning.job-ttl-minutes:60}")
+    private long jobTtlMinutes;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(maxPending), runnable -> {
+            Thread thread = new Thread(runnable, "provisioning-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the creation and returns immediately. Throws RejectedExecutionException when too many are pending.
+     */
+    public ProvisioningJobStatus submit(CreateDatabaseRequest request) {
+        if (!dockerService.isDockerConnected()) {
+            throw new IllegalStateException("Cannot create container: Not connected to Docker daemon.");
+        }
+        request.resourceProfile(); // Reject an invalid profile now rather than in the background job
+        ProvisioningJob job = new ProvisioningJob(UUID.randomUUID().toString(), request);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new RejectedExecutionException("Too many databases are being provisioned. Try again later.", e);
+        }
+        return job.toStatus();
+    }
+
+    /**
+     * Queues a batch of creations without going through the bounded queue, so a batch is never partly rejected.
+     * Each creation waits on its own virtual thread for one of the given permits; the caller bounds the batch size.
+     */
+    public List<ProvisioningJobStatus> submitAll(List<CreateDatabaseRequest> requests, Semaphore permits) {
+        if (!dockerService.isDockerConnected()) {
+            throw new IllegalStateException("Cannot create container: Not connected to Docker daemon.");
+        }
+        requests.forEach(CreateDatabaseRequest::resourceProfile); // Reject invalid profiles before anything is queued
+        List<ProvisioningJobStatus> statuses = new ArrayList<>(requests.size());
+        for (CreateDatabaseRequest request : requests) {
+            ProvisioningJob job = new ProvisioningJob(UUID.randomUUID().toString(), request);
+            jobs.put(job.id, job);
+            Thread.ofVirtual().name("batch-provisioning-" + job.id).start(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    job.finish(ProvisioningState.FAILED, "Interrupted while waiting for a provisioning slot.");
+                    return;
+                }
+                try {
+                    run(job);
+                } finally {
+                    permits.release();
+                }
+            });
+            statuses.add(job.toStatus());
+        }
+        return statuses;
+    }
+
+    public ProvisioningJobStatus getStatus(String jobId) {
+        ProvisioningJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Provisioning job not found with id: " + jobId);
+        }
+        return job.toStatus();
+    }
+
+    @Scheduled(fixedDelayString = "${dataforge.provisioning.cleanup-interval-ms:60000}")
+    public void removeExpiredJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(jobTtlMinutes));
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // An instance that never becomes ready is removed again before the exception is thrown
+    private DatabaseInstance provision(CreateDatabaseRequest request, Consumer<DatabaseInstance> onContainerStarted) throws InterruptedException {
+        DatabaseInstance instance = dockerService.createPostgresContainer(request.dbName(), request.user(), request.password(), request.resourceProfile());
+        onContainerStarted.accept(instance);
+        try {
+            awaitReady(instance);
+        } catch (InterruptedException | RuntimeException e) {
+            // Don't leave a registered instance behind that never became usable
+            try {
+                databaseInstanceService.deleteInstance(instance.getId());
+            } catch (RuntimeException cleanupError) {
+                System.err.println("Failed to remove unready instance " + instance.getId() + ": " + cleanupError.getMessage());
+            }
+            throw e;
+        }
+        System.out.println("Database " + request.dbName() + " (ID " + instance.getId() + ") is ready.");
+        return instance;
+    }
+
+    private void run(ProvisioningJob job) {
+        job.startedAt = Instant.now();
+        try {
+            provision(job.request, instance -> {
+                job.instance = instance;
+                job.containerStartedAt = Instant.now();
+            });
+            job.finish(ProvisioningState.READY, null);
+        } catch (Exception e) {
+            job.finish(ProvisioningState.FAILED, e.getMessage());
+            System.err.println("Failed to provision database " + job.request.dbName() + ": " + e.getMessage());
+        }
+    }
+
+    private void awaitReady(DatabaseInstance instance) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(readyTimeoutSeconds);
+        String lastError = null;
+
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(instance.getHost(), instance.getPort()), 1000);
+                break;
+            } catch (IOException e) {
+                lastError = e.getMessage();
+            }
+            pauseBeforeRetry(deadline, lastError);
+        }
+
+        // A fresh connection rather than the instance's pool, so failed attempts don't create a pool
+        ConnectionDescriptor descriptor = connectionDescriptorResolver.resolve(instance.getId());
+        while (true) {
+            try (Connection conn = DriverManager.getConnection(descriptor.jdbcUrl(), descriptor.user(), descriptor.password())) {
+                if (conn.isValid(2)) {
+                    return;
+                }
+                lastError = "connection is not valid";
+            } catch (SQLException e) {
+                lastError = e.getMessage();
+            }
+            pauseBeforeRetry(deadline, lastError);
+        }
+    }
+
+    private void pauseBeforeRetry(long deadline, String lastError) throws InterruptedException {
+        if (System.nanoTime() >= deadline) {
+            throw new IllegalStateException("Postgres did not accept connections within " + readyTimeoutSeconds + " seconds: " + lastError);
+        }
+        Thread.sleep(250);
+    }
+
+    private static class ProvisioningJob {
+        private final String id;
+        private final CreateDatabaseRequest request;
+        private final Instant submittedAt = Instant.now();
+        private volatile ProvisioningState state = ProvisioningState.PENDING;
+        private volatile DatabaseInstance instance;
+        private volatile Instant startedAt;
+        private volatile Instant containerStartedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        ProvisioningJob(String id, CreateDatabaseRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+
+        void finish(ProvisioningState finalState, String failure) {
+            error = failure;
+            finishedAt = Instant.now();
+            state = finalState;
+        }
+
+        ProvisioningJobStatus toStatus() {
+            DatabaseInstance registered = state == ProvisioningState.FAILED ? null : instance;
+            Long containerMillis = startedAt != null && containerStartedAt != null
+                    ? Duration.between(startedAt, containerStartedAt).toMillis() : null;
+            Long readinessMillis = containerStartedAt != null && finishedAt != null
+                    ? Duration.between(containerStartedAt, finishedAt).toMillis() : null;
+            return new ProvisioningJobStatus(id, state.name(), request.dbName(),
+                    registered != null ? registered.getId() : null,
+                    registered != null ? registered.getContainerId() : null,
+                    registered != null ? registered.getHost() : null,
+                    registered != null ? registered.getPort() : null,
+                    submittedAt, startedAt, finishedAt, containerMillis, readinessMillis, error);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.QueryJobStatus;
+import com.dataforge.exception.ResourceNotFoundException;
+import com.dataforge.util.BoundSql;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs ad-hoc queries in the background and spills their rows to NDJSON chunk files on local disk,
+ * so long analytical queries don't hold an HTTP request open and results don't sit on the heap.
+ * Jobs run on a fixed-size executor; at most perDbLimit jobs run per instance and the rest wait in that
+ * instance's queue. Finished jobs and their files are removed once the result TTL has passed.
+ */
+@Service
+public class QueryJobService {
+
+    public enum JobState { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final Map<String, QueryJob> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, DbLane> lanes = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    @Autowired
+    private QueryService queryService;
+
+    @Autowired
+    private RunningQueryRegistry runningQueryRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${dataforge.query-jobs.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${dataforge.query-jobs.per-db-limit:2}")
+    private int perDbLimit;
+
+    @Value("${dataforge.query-jobs.max-pending:100}")
+    private int maxPending;
+
+    @Value("${dataforge.query-jobs.chunk-rows:10000}")
+    private int chunkRows;
+
+    @Value("${dataforge.query-jobs.max-rows:10000000}")
+    private long maxRows;
+
+    @Value("${dataforge.query-jobs.result-ttl-minutes:60}")
+    private long resultTtlMinutes;
+
+    @Value("${dataforge.query-jobs.spill-dir:${java.io.tmpdir}/dataforge-query-jobs}")
+    private String spillDir;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "query-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the statement and returns immediately. Throws RejectedExecutionException when too many jobs are pending.
+     */
+    public QueryJobStatus submit(Long dbId, BoundSql query, Integer timeoutSeconds) {
+        long pending = jobs.values().stream().filter(job -> !job.isFinished()).count();
+        if (pending >= maxPending) {
+            throw new RejectedExecutionException("Too many query jobs are queued or running (" + pending + "). Try again later.");
+        }
+        QueryJob job = new QueryJob(UUID.randomUUID().toString(), dbId, query, timeoutSeconds, Paths.get(spillDir));
+        jobs.put(job.id, job);
+        lanes.computeIfAbsent(dbId, id -> new DbLane()).submit(job);
+        return job.toStatus();
+    }
+
+    public QueryJobStatus getStatus(Long dbId, String jobId) {
+        return findJob(dbId, jobId).toStatus();
+    }
+
+    public List<QueryJobStatus> listJobs(Long dbId) {
+        return jobs.values().stream()
+                .filter(job -> job.dbId.equals(dbId))
+                .sorted(Comparator.comparing(job -> job.submittedAt))
+                .map(QueryJob::toStatus)
+                .toList();
+    }
+
+    /**
+     * Returns the file of one spilled chunk. Chunks become readable as soon as they are complete,
+     * so the first pages can be read while the job is still running.
+     */
+    public Path getChunkFile(Long dbId, String jobId, int chunk) {
+        QueryJob job = findJob(dbId, jobId);
+        if (chunk < 0 || chunk >= job.chunkCount) {
+            throw new ResourceNotFoundException("Chunk " + chunk + " of query job " + jobId + " is not available. Chunks ready: " + job.chunkCount + ".");
+        }
+        return job.chunkPath(chunk);
+    }
+
+    /**
+     * Returns the chunk files of a finished job in order.
+     */
+    public List<Path> getChunkFiles(Long dbId, String jobId) {
+        QueryJob job = findJob(dbId, jobId);
+        if (job.state != JobState.SUCCEEDED) {
+            throw new IllegalStateException("Query job " + jobId + " is " + job.state + "; full results are available once it has succeeded.");
+        }
+        List<Path> files = new ArrayList<>(job.chunkCount);
+        for (int chunk = 0; chunk < job.chunkCount; chunk++) {
+            files.add(job.chunkPath(chunk));
+        }
+        return files;
+    }
+
+    /**
+     * Cancels a queued or running job and removes it together with its spilled results.
+     */
+    public void deleteJob(Long dbId, String jobId) {
+        cancelAndRemove(findJob(dbId, jobId));
+    }
+
+    /**
+     * Cancels and removes every job of a deleted instance and drops its lane.
+     */
+    public void forgetInstance(Long dbId) {
+        jobs.values().stream()
+                .filter(job -> job.dbId.equals(dbId))
+                .toList()
+                .forEach(this::cancelAndRemove);
+        // Jobs still draining hold their own reference to the lane, so removing it here is safe
+        lanes.remove(dbId);
+    }
+
+    private void cancelAndRemove(QueryJob job) {
+        // The job's statement is registered under the job id; if it isn't yet (the worker may still be waiting
+        // for a connection), the registration fails instead. Done under the job's lock, so the worker can't
+        // complete and clear the mark in between.
+        JobState state = job.requestCancel(() -> runningQueryRegistry.cancelOrPreempt(job.id));
+        jobs.remove(job.id);
+        if (isFinal(state)) {
+            deleteFiles(job);
+        }
+        // A job that is still running deletes its own files once it sees the cancellation
+    }
+
+    @Scheduled(fixedDelayString = "${dataforge.query-jobs.cleanup-interval-ms:60000}")
+    public void removeExpiredJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(resultTtlMinutes));
+        jobs.values().removeIf(job -> {
+            boolean expired = job.isFinished() && job.finishedAt.isBefore(cutoff);
+            if (expired) {
+                System.out.println("Removing expired results of query job " + job.id + ".");
+                deleteFiles(job);
+            }
+            return expired;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        jobs.values().forEach(this::deleteFiles);
+    }
+
+    private QueryJob findJob(Long dbId, String jobId) {
+        QueryJob job = jobs.get(jobId);
+        if (job == null || !job.dbId.equals(dbId)) {
+            throw new ResourceNotFoundException("Query job not found with id: " + jobId);
+        }
+        return job;
+    }
+
+    private void run(QueryJob job) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            runJob(job);
+        } finally {
+            runningQueryRegistry.clearPendingCancel(job.id);
+        }
+        if (job.state == JobState.CANCELLED) {
+            deleteFiles(job);
+        }
+    }
+
+    private void runJob(QueryJob job) {
+        try {
+            Files.createDirectories(job.directory);
+            // Jobs are for analytical reads, so they always run in a READ ONLY transaction
+            try (ResultSetStream result = queryService.openQuery(job.dbId, job.query, true, job.timeoutSeconds, job.id)) {
+                if (result.isQueryResult()) {
+                    spill(job, result.resultSet());
+                } else {
+                    job.updateCount = result.updateCount();
+                }
+            }
+            job.complete(null);
+        } catch (SQLException | IOException | RuntimeException e) {
+            job.complete(e.getMessage());
+        }
+    }
+
+    private static boolean isFinal(JobState state) {
+        return state == JobState.SUCCEEDED || state == JobState.FAILED || state == JobState.CANCELLED;
+    }
+
+    private void spill(QueryJob job, ResultSet rs) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(metaData.getColumnName(i));
+        }
+        job.columns = columns;
+
+        JsonGenerator generator = null;
+        int rowsInChunk = 0;
+        try {
+            while (!job.cancelRequested && rs.next()) {
+                if (job.rowCount >= maxRows) {
+                    job.truncated = true;
+                    break;
+                }
+                if (generator == null) {
+                    generator = objectMapper.getFactory().createGenerator(job.chunkPath(job.chunkCount).toFile(), JsonEncoding.UTF8);
+                }
+                generator.writeStartObject();
+                for (int i = 1; i <= columnCount; i++) {
+                    generator.writeFieldName(columns.get(i - 1));
+                    generator.writeObject(rs.getObject(i));
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                job.rowCount++;
+                if (++rowsInChunk == chunkRows) {
+                    generator.close();
+                    generator = null;
+                    rowsInChunk = 0;
+                    job.chunkCount++; // Published only after the file is complete
+                }
+            }
+        } finally {
+            if (generator != null) {
+                generator.close();
+                job.chunkCount++;
+            }
+        }
+    }
+
+    private void deleteFiles(QueryJob job) {
+        if (!Files.exists(job.directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(job.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Failed to delete results of query job " + job.id + ": " + e.getMessage());
+        }
+    }
+
+    // Runs up to perDbLimit jobs of one instance at a time; the others wait here without holding an executor thread
+    private class DbLane {
+        private final Deque<QueryJob> waiting = new ArrayDeque<>();
+        private int running;
+
+        synchronized void submit(QueryJob job) {
+            if (running < perDbLimit) {
+                running++;
+                dispatch(job);
+            } else {
+                waiting.add(job);
+            }
+        }
+
+        private synchronized void onFinished() {
+            QueryJob next = waiting.poll();
+            if (next != null) {
+                dispatch(next);
+            } else {
+                running--;
+            }
+        }
+
+        private void dispatch(QueryJob job) {
+            executor.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    onFinished();
+                }
+            });
+        }
+    }
+
+    private static class QueryJob {
+        private final String id;
+        private final Long dbId;
+        private final BoundSql query;
+        private final Integer timeoutSeconds;
+        private final Path directory;
+        private final Instant submittedAt = Instant.now();
+        private volatile JobState state = JobState.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile List<String> columns;
+        private volatile long rowCount;
+        private volatile int chunkCount;
+        private volatile Integer updateCount;
+        private volatile boolean truncated;
+        private volatile boolean cancelRequested;
+        private volatile String error;
+
+        QueryJob(String id, Long dbId, BoundSql query, Integer timeoutSeconds, Path spillRoot) {
+            this.id = id;
+            this.dbId = dbId;
+            this.query = query;
+            this.timeoutSeconds = timeoutSeconds;
+            this.directory = spillRoot.resolve(id);
+        }
+
+        Path chunkPath(int chunk) {
+            return directory.resolve(String.format("chunk-%05d.ndjson", chunk));
+        }
+
+        boolean isFinished() {
+            return isFinal(state);
+        }
+
+        // start, complete and requestCancel lock the job, so a delete either stops a queued job before it runs
+        // or sees it RUNNING and cancels its statement, and exactly one side deletes the spilled files
+
+        // Moves QUEUED to RUNNING, or to CANCELLED if a delete came first; returns whether the job should run
+        synchronized boolean start() {
+            if (cancelRequested) {
+                finish(JobState.CANCELLED, null);
+                return false;
+            }
+            startedAt = Instant.now();
+            state = JobState.RUNNING;
+            return true;
+        }
+
+        synchronized void complete(String failure) {
+            finish(cancelRequested ? JobState.CANCELLED : failure != null ? JobState.FAILED : JobState.SUCCEEDED, failure);
+        }
+
+        // Returns the state the job was in when the cancellation was recorded; whileRunning runs if it was RUNNING
+        synchronized JobState requestCancel(Runnable whileRunning) {
+            cancelRequested = true;
+            if (state == JobState.RUNNING) {
+                whileRunning.run();
+            }
+            return state;
+        }
+
+        private void finish(JobState finalState, String failure) {
+            error = failure;
+            finishedAt = Instant.now();
+            state = finalState;
+        }
+
+        QueryJobStatus toStatus() {
+            return new QueryJobStatus(id, dbId, state.name(), submittedAt, startedAt, finishedAt, columns,
+                    rowCount, chunkCount, updateCount, truncated ? Boolean.TRUE : null, error);
+        }
+    }
+}
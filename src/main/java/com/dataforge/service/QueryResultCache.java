@@ -0,0 +1,181 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.QueryCacheStats;
+import com.dataforge.dto.SqlQueryResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the responses of read-only ad-hoc queries, keyed by (dbId, normalized SQL, parameters).
+ * The cache is bounded by the estimated JSON size of the responses and entries expire after a TTL.
+ * Each entry is indexed by the tables its plan reads, so writes and DDL made through the API drop exactly
+ * the entries that read the changed table. Writes the API can't see (other clients, cascades, triggers)
+ * are only covered by the TTL.
+ */
+@Service
+public class QueryResultCache {
+
+    private final Map<TableRef, Set<Key>> keysByTable = new ConcurrentHashMap<>();
+    // Bumped on every invalidation, so a result read before a concurrent write is not cached after it
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private Cache<Key, Entry> cache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${dataforge.query-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${dataforge.query-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Entry entry) -> entry.sizeBytes())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                // Runs asynchronously, possibly after the key was cached again; a replaced entry's key stays indexed
+                .removalListener((Key key, Entry entry, RemovalCause cause) -> {
+                    if (key != null && entry != null && cause != RemovalCause.REPLACED) {
+                        unindex(key, entry.tables());
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public Key keyFor(Long dbId, String sql, List<Object> params) {
+        return new Key(dbId, normalize(sql), params == null ? List.of() : List.copyOf(params));
+    }
+
+    public SqlQueryResponse get(Key key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry == null ? null : entry.response();
+    }
+
+    /**
+     * Returns the instance's invalidation generation; read it before executing a query that will be cached.
+     */
+    public long generation(Long dbId) {
+        return generations.computeIfAbsent(dbId, id -> new AtomicLong()).get();
+    }
+
+    /**
+     * Stores a response together with the (lower-cased) names of the tables it was read from,
+     * unless the instance saw an invalidation since {@code generation} was read.
+     */
+    public void put(Key key, SqlQueryResponse response, Set<String> tables, long generation) {
+        if (generation(key.dbId()) != generation) {
+            return;
+        }
+        int sizeBytes;
+        try {
+            sizeBytes = objectMapper.writeValueAsBytes(response).length;
+        } catch (JsonProcessingException e) {
+            return; // Not serializable, so it couldn't be returned from the cache either
+        }
+        Entry entry = new Entry(response, tables, sizeBytes);
+        cache.put(key, entry);
+        for (String table : tables) {
+            keysByTable.compute(new TableRef(key.dbId(), table), (ref, keys) -> {
+                Set<Key> indexed = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                indexed.add(key);
+                return indexed;
+            });
+        }
+        // An invalidation that bumped the generation after the first check may have missed the entry or its index,
+        // so it's dropped here; one that bumps it after this check finds both
+        if (generation(key.dbId()) != generation) {
+            cache.asMap().remove(key, entry);
+        }
+    }
+
+    public void invalidateTable(Long dbId, String tableName) {
+        generations.computeIfAbsent(dbId, id -> new AtomicLong()).incrementAndGet();
+        Set<Key> keys = keysByTable.remove(new TableRef(dbId, tableName.toLowerCase()));
+        if (keys != null && !keys.isEmpty()) {
+            invalidations.addAndGet(keys.size());
+            cache.invalidateAll(keys);
+        }
+    }
+
+    // For writes whose tables aren't known, such as ad-hoc statements
+    public void invalidateDatabase(Long dbId) {
+        generations.computeIfAbsent(dbId, id -> new AtomicLong()).incrementAndGet();
+        List<Key> keys = cache.asMap().keySet().stream().filter(key -> key.dbId().equals(dbId)).toList();
+        if (!keys.isEmpty()) {
+            invalidations.addAndGet(keys.size());
+            cache.invalidateAll(keys);
+        }
+    }
+
+    public QueryCacheStats stats() {
+        CacheStats stats = cache.stats();
+        long sizeBytes = cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+        return new QueryCacheStats(cache.estimatedSize(), sizeBytes, maxBytes, stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), invalidations.get());
+    }
+
+    // The presence check runs inside the table's compute, so it can't interleave with a put indexing the same key
+    private void unindex(Key key, Set<String> tables) {
+        for (String table : tables) {
+            keysByTable.computeIfPresent(new TableRef(key.dbId(), table), (ref, keys) -> {
+                if (!cache.asMap().containsKey(key)) {
+                    keys.remove(key);
+                }
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    // Collapses whitespace outside quoted literals and identifiers and drops a trailing semicolon
+    private String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (char c : sql.trim().toCharArray()) {
+            if (quote == 0 && Character.isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            normalized.append(c);
+        }
+        int end = normalized.length();
+        while (end > 0 && (normalized.charAt(end - 1) == ';' || normalized.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+
+    public record Key(Long dbId, String sql, List<Object> params) {}
+
+    private record TableRef(Long dbId, String table) {}
+
+    private record Entry(SqlQueryResponse response, Set<String> tables, int sizeBytes) {}
+}
@@ -1,72 +1,357 @@
 package com.dataforge.service;
 
+import com.dataforge.dto.CachedQueryResult;
 import com.dataforge.dto.SqlQueryResponse;
-import com.dataforge.exception.ResourceNotFoundException;
-import com.dataforge.model.DatabaseInstance;
-import com.dataforge.repository.DatabaseInstanceRepository;
-import com.dataforge.util.EncryptionUtil;
+import com.dataforge.dto.SqlScriptResponse;
+import com.dataforge.util.BoundSql;
+import com.dataforge.util.ColumnValueBinder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Service
 public class QueryService {
 
+    // Statements starting with these keywords are run with a server-side cursor
+    private static final Set<String> ROW_RETURNING_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "SHOW", "EXPLAIN");
+    // Statements starting with these keywords can't change a table's columns; anything else (DDL, DO, CALL, ...) might
+    private static final Set<String> SCHEMA_PRESERVING_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "SHOW", "EXPLAIN",
+            "INSERT", "UPDATE", "DELETE", "MERGE", "TRUNCATE", "COPY", "SET", "BEGIN", "COMMIT", "ROLLBACK");
+    // Statements starting with these keywords never produce rows unless they have a RETURNING clause, so they can be batched
+    private static final Set<String> BATCHABLE_KEYWORDS = Set.of("INSERT", "UPDATE", "DELETE",
+            "CREATE", "ALTER", "DROP", "TRUNCATE", "COMMENT", "GRANT", "REVOKE");
+    // A script already runs in one transaction; these would commit or roll back part of it behind the caller's back
+    private static final Set<String> TRANSACTION_CONTROL_KEYWORDS = Set.of("BEGIN", "START", "COMMIT", "END",
+            "ROLLBACK", "ABORT", "SAVEPOINT", "RELEASE");
+    private static final Pattern RETURNING_CLAUSE = Pattern.compile("\\bRETURNING\\b", Pattern.CASE_INSENSITIVE);
+
     @Autowired
-    private DatabaseInstanceRepository instanceRepository;
+    private ConnectionPoolRegistry connectionPoolRegistry;
+
     @Autowired
-    private EncryptionUtil encryptionUtil;
+    private RunningQueryRegistry runningQueryRegistry;
 
-    public SqlQueryResponse executeQuery(Long dbId, String sql) {
-        DatabaseInstance instance = instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
+    @Autowired
+    private ConnectionDescriptorResolver connectionDescriptorResolver;
 
-        String url = String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-        String user = instance.getDbUser();
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
+    @Autowired
+    private QueryResultCache queryResultCache;
 
-        try (Connection conn = DriverManager.getConnection(url, user, decryptedPassword);
-             Statement stmt = conn.createStatement()) {
+    @Autowired
+    private TableManagerService tableManagerService;
 
-            // stmt.execute() returns 'true' if the result is a ResultSet (like a SELECT)
-            // and 'false' if it's an update count or no result.
-            boolean isResultSet = stmt.execute(sql);
+    @Autowired
+    private ObjectMapper objectMapper;
 
-            if (isResultSet) {
-                // It was a SELECT query
-                try (ResultSet rs = stmt.getResultSet()) {
-                    ResultSetMetaData metaData = rs.getMetaData();
-                    int columnCount = metaData.getColumnCount();
+    @Autowired
+    private ColumnValueBinder columnValueBinder;
 
-                    List<String> columns = new ArrayList<>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        columns.add(metaData.getColumnName(i));
-                    }
+    @Value("${dataforge.query.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${dataforge.query.default-timeout-seconds:300}")
+    private int defaultTimeoutSeconds;
+
+    @Value("${dataforge.query.max-timeout-seconds:3600}")
+    private int maxTimeoutSeconds;
+
+    /**
+     * Returns the response of a read-only query from the result cache, or executes it and caches the response.
+     * The statement runs in a READ ONLY transaction, so anything that writes fails instead of being cached.
+     * Only statements Postgres can EXPLAIN are cached, since the plan is what names the tables to invalidate on.
+     */
+    public CachedQueryResult executeCachedQuery(Long dbId, BoundSql query, Integer timeoutSeconds) throws SQLException {
+        QueryResultCache.Key key = queryResultCache.keyFor(dbId, query.sql(), query.params());
+        SqlQueryResponse cached = queryResultCache.get(key);
+        if (cached != null) {
+            return new CachedQueryResult(cached, true);
+        }
+
+        long generation = queryResultCache.generation(dbId);
+        ReadOnlyResult result = runReadOnly(dbId, query, timeoutSeconds, 0, true);
+        if (result.response().isQueryResult() && result.tables() != null) {
+            queryResultCache.put(key, result.response(), result.tables(), generation);
+        }
+        return new CachedQueryResult(result.response(), false);
+    }
+
+    /**
+     * Executes the statement in a READ ONLY transaction and returns its buffered response.
+     * At most maxRows rows are read (0 for no limit); the limit is passed to Postgres, so the rest are never sent.
+     */
+    public SqlQueryResponse executeReadOnly(Long dbId, BoundSql query, Integer timeoutSeconds, int maxRows) throws SQLException {
+        return runReadOnly(dbId, query, timeoutSeconds, maxRows, false).response();
+    }
 
-                    List<Map<String, Object>> rows = new ArrayList<>();
-                    while (rs.next()) {
-                        Map<String, Object> row = new LinkedHashMap<>(); // Use LinkedHashMap to preserve column order
-                        for (int i = 1; i <= columnCount; i++) {
-                            row.put(metaData.getColumnName(i), rs.getObject(i));
+    // With explain, also collects the tables the statement reads; they are null when it can't be explained
+    private ReadOnlyResult runReadOnly(Long dbId, BoundSql query, Integer timeoutSeconds, int maxRows, boolean explain) throws SQLException {
+        int effectiveTimeout = resolveTimeoutSeconds(dbId, timeoutSeconds);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
+             Statement stmt = createStatement(conn, query)) {
+            conn.setReadOnly(true);
+            conn.setAutoCommit(false);
+            stmt.setMaxRows(maxRows);
+            String queryId = runningQueryRegistry.register(dbId, query.sql(), stmt, effectiveTimeout);
+            try {
+                SqlQueryResponse response = toResponse(stmt, execute(stmt, query));
+                Set<String> tables = explain && returnsRows(query.sql()) ? referencedTables(conn, query) : null;
+                return new ReadOnlyResult(response, tables);
+            } finally {
+                runningQueryRegistry.deregister(queryId);
+                conn.rollback(); // Nothing to commit in a read-only transaction
+            }
+        }
+    }
+
+    /**
+     * Runs the statements in order on one connection in one transaction. Consecutive statements that
+     * are known to return no rows are sent together as a JDBC batch; the others are executed one by one.
+     * The first failure rolls back everything and stops the script. Transaction control statements are
+     * rejected before anything runs, since they would break the script's all-or-nothing guarantee.
+     */
+    public SqlScriptResponse executeScript(Long dbId, List<String> statements, Integer timeoutSeconds) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (TRANSACTION_CONTROL_KEYWORDS.contains(firstKeyword(statements.get(i)))) {
+                return new SqlScriptResponse(false, "Statement " + i + " is a transaction control statement; "
+                        + "a script already runs in a single transaction.", List.of(), i);
+            }
+        }
+        int effectiveTimeout = resolveTimeoutSeconds(dbId, timeoutSeconds);
+        List<SqlQueryResponse> results = new ArrayList<>(statements.size());
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            String queryId = runningQueryRegistry.register(dbId, String.join(";\n", statements), stmt, effectiveTimeout);
+            try {
+                int i = 0;
+                while (i < statements.size()) {
+                    if (!isBatchable(statements.get(i))) {
+                        results.add(toResponse(stmt, stmt.execute(statements.get(i))));
+                        i++;
+                        continue;
+                    }
+                    while (i < statements.size() && isBatchable(statements.get(i))) {
+                        stmt.addBatch(statements.get(i));
+                        i++;
+                    }
+                    try {
+                        for (int count : stmt.executeBatch()) {
+                            results.add(SqlQueryResponse.forUpdate(Math.max(count, 0))); // SUCCESS_NO_INFO reports no count
+                        }
+                    } catch (BatchUpdateException e) {
+                        // Statements before the failing one report their counts; record them so the index points at the culprit
+                        for (int count : e.getUpdateCounts()) {
+                            if (count == Statement.EXECUTE_FAILED) {
+                                break;
+                            }
+                            results.add(SqlQueryResponse.forUpdate(Math.max(count, 0)));
                         }
-                        rows.add(row);
+                        throw e;
                     }
-                    return SqlQueryResponse.forSelect(columns, rows);
                 }
-            } else {
-                // It was an UPDATE, INSERT, DELETE, or DDL statement
-                int rowsAffected = stmt.getUpdateCount();
-                return SqlQueryResponse.forUpdate(rowsAffected);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+                return SqlScriptResponse.forFailure(results, results.size(), cause.getMessage());
+            } finally {
+                runningQueryRegistry.deregister(queryId);
+            }
+        } catch (SQLException e) {
+            return SqlScriptResponse.forFailure(results, results.size(), e.getMessage());
+        } finally {
+            queryResultCache.invalidateDatabase(dbId);
+            if (statements.stream().anyMatch(this::mayChangeSchema)) {
+                tableManagerService.evictSchemas(dbId);
+            }
+        }
+        return SqlScriptResponse.forSuccess(results);
+    }
+
+    /**
+     * Executes the statement and leaves its result set open so the caller can stream it.
+     * Row-returning statements run in a transaction with a fetch size, which makes pgjdbc read the result
+     * through a server-side cursor instead of loading it all into memory. Other statements keep autocommit,
+     * so statements that can't run inside a transaction block still work. Statements with parameters are run
+     * as a PreparedStatement so their plan can be reused. With readOnly the statement always runs inside a
+     * READ ONLY transaction with a fetch size, so anything that tries to write fails instead of committing.
+     * The statement is tracked in the RunningQueryRegistry until the stream is closed and is cancelled once
+     * the timeout elapses; a null timeout falls back to the instance's default.
+     */
+    public ResultSetStream openQuery(Long dbId, BoundSql query, boolean readOnly, Integer timeoutSeconds) throws SQLException {
+        return openQuery(dbId, query, readOnly, timeoutSeconds, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Same as {@link #openQuery(Long, BoundSql, boolean, Integer)}, registering the statement under the given query id
+     * so a caller that already has an id (e.g. a query job) can cancel it through the registry.
+     */
+    public ResultSetStream openQuery(Long dbId, BoundSql query, boolean readOnly, Integer timeoutSeconds, String requestedQueryId) throws SQLException {
+        int effectiveTimeout = resolveTimeoutSeconds(dbId, timeoutSeconds);
+        Connection conn = connectionPoolRegistry.getConnection(dbId);
+        String queryId = null;
+        try {
+            Statement stmt = createStatement(conn, query);
+            if (readOnly) {
+                // Must be set before the transaction starts; the pool resets it when the connection is returned
+                conn.setReadOnly(true);
+            }
+            if (readOnly || returnsRows(query.sql())) {
+                conn.setAutoCommit(false);
+                stmt.setFetchSize(fetchSize);
+            }
+            queryId = runningQueryRegistry.register(requestedQueryId, dbId, query.sql(), stmt, effectiveTimeout);
+            String registeredId = queryId;
+            boolean isResultSet = execute(stmt, query);
+            return new ResultSetStream(conn, stmt, isResultSet ? stmt.getResultSet() : null, isResultSet ? -1 : stmt.getUpdateCount(),
+                    queryId, () -> {
+                        runningQueryRegistry.deregister(registeredId);
+                        if (!readOnly) {
+                            // Runs after the commit; the statement may have written, so drop this instance's cached results
+                            queryResultCache.invalidateDatabase(dbId);
+                            if (mayChangeSchema(query.sql())) {
+                                // Column validation in CRUD must see columns added or dropped here
+                                tableManagerService.evictSchemas(dbId);
+                            }
+                        }
+                    });
+        } catch (SQLException | RuntimeException e) {
+            if (queryId != null) {
+                runningQueryRegistry.deregister(queryId);
+            }
+            // Closes the connection (and frees its bulkhead slot) even if the rollback fails
+            try (conn) {
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                }
+            } catch (SQLException cleanupError) {
+                e.addSuppressed(cleanupError);
             }
+            throw e;
+        }
+    }
+
+    /**
+     * The request's timeout, else the instance's default, else the global default; never above the configured maximum.
+     */
+    private int resolveTimeoutSeconds(Long dbId, Integer requested) {
+        // Served from the descriptor cache, so queries don't hit H2 for the instance's default
+        Integer instanceTimeout = connectionDescriptorResolver.resolve(dbId).queryTimeoutSeconds();
+        int timeout = requested != null ? requested
+                : instanceTimeout != null ? instanceTimeout
+                : defaultTimeoutSeconds;
+        return Math.min(timeout, maxTimeoutSeconds);
+    }
 
+    // Parameterized statements are prepared, so after a few executions pgjdbc reuses a server-side plan on the connection
+    private Statement createStatement(Connection conn, BoundSql query) throws SQLException {
+        if (!query.hasParams()) {
+            return conn.createStatement();
+        }
+        PreparedStatement pstmt = conn.prepareStatement(query.sql());
+        try {
+            for (int i = 0; i < query.params().size(); i++) {
+                columnValueBinder.bindUntyped(pstmt, i + 1, query.params().get(i));
+            }
         } catch (SQLException e) {
-            // If there's a SQL error, return a structured error response
-            return SqlQueryResponse.forError(e.getMessage());
+            pstmt.close();
+            throw e;
+        }
+        return pstmt;
+    }
+
+    private boolean execute(Statement stmt, BoundSql query) throws SQLException {
+        return stmt instanceof PreparedStatement pstmt ? pstmt.execute() : stmt.execute(query.sql());
+    }
+
+    private SqlQueryResponse toResponse(Statement stmt, boolean isResultSet) throws SQLException {
+        if (isResultSet) {
+            // It was a SELECT query
+            try (ResultSet rs = stmt.getResultSet()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+
+                List<String> columns = new ArrayList<>();
+                for (int i = 1; i <= columnCount; i++) {
+                    columns.add(metaData.getColumnName(i));
+                }
+
+                List<Map<String, Object>> rows = new ArrayList<>();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>(); // Use LinkedHashMap to preserve column order
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.put(metaData.getColumnName(i), rs.getObject(i));
+                    }
+                    rows.add(row);
+                }
+                return SqlQueryResponse.forSelect(columns, rows);
+            }
+        } else {
+            // It was an UPDATE, INSERT, DELETE, or DDL statement
+            int rowsAffected = stmt.getUpdateCount();
+            return SqlQueryResponse.forUpdate(rowsAffected);
+        }
+    }
+
+    /**
+     * Lower-cased names of the tables in the statement's plan (views resolve to their base tables),
+     * or null when the statement can't be explained.
+     */
+    private Set<String> referencedTables(Connection conn, BoundSql query) {
+        BoundSql explain = new BoundSql("EXPLAIN (FORMAT JSON) " + query.sql(), query.params());
+        try (Statement stmt = createStatement(conn, explain);
+             ResultSet rs = execute(stmt, explain) ? stmt.getResultSet() : null) {
+            if (rs == null) {
+                return null;
+            }
+            if (!rs.next()) {
+                return null;
+            }
+            Set<String> tables = new HashSet<>();
+            for (JsonNode relation : objectMapper.readTree(rs.getString(1)).findValues("Relation Name")) {
+                tables.add(relation.asText().toLowerCase());
+            }
+            return tables;
+        } catch (SQLException | JsonProcessingException e) {
+            return null;
         }
     }
+
+    // Batched statements may not produce rows, so only an allowlist is batched; anything unknown runs on its own
+    private boolean isBatchable(String sql) {
+        return BATCHABLE_KEYWORDS.contains(firstKeyword(sql)) && !RETURNING_CLAUSE.matcher(sql).find();
+    }
+
+    private boolean returnsRows(String sql) {
+        return ROW_RETURNING_KEYWORDS.contains(firstKeyword(sql));
+    }
+
+    private boolean mayChangeSchema(String sql) {
+        return !SCHEMA_PRESERVING_KEYWORDS.contains(firstKeyword(sql));
+    }
+
+    // The statement's first word in upper case, after leading whitespace, comments and parentheses
+    private String firstKeyword(String sql) {
+        String trimmed = sql.replaceAll("(?s)^(\\s|\\(|--[^\\n]*\\n?|/\\*.*?\\*/)+", "");
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return trimmed.substring(0, end).toUpperCase();
+    }
+
+    private record ReadOnlyResult(SqlQueryResponse response, Set<String> tables) {}
 }
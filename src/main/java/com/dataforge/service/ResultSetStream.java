@@ -0,0 +1,75 @@
+package com.dataforge.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An executed statement whose result is still open on its pooled connection, so rows can be written
+ * to the client while they are fetched. Closing it ends the transaction and returns the connection to the pool.
+ */
+public class ResultSetStream implements AutoCloseable {
+
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet; // Null when the statement produced an update count
+    private final int updateCount;
+    private final String queryId; // Id in the RunningQueryRegistry, or null when the statement isn't tracked
+    private final Runnable onClose;
+
+    ResultSetStream(Connection connection, Statement statement, ResultSet resultSet, int updateCount) {
+        this(connection, statement, resultSet, updateCount, null, null);
+    }
+
+    ResultSetStream(Connection connection, Statement statement, ResultSet resultSet, int updateCount,
+                    String queryId, Runnable onClose) {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.updateCount = updateCount;
+        this.queryId = queryId;
+        this.onClose = onClose;
+    }
+
+    public boolean isQueryResult() {
+        return resultSet != null;
+    }
+
+    public ResultSet resultSet() {
+        return resultSet;
+    }
+
+    public int updateCount() {
+        return updateCount;
+    }
+
+    public String queryId() {
+        return queryId;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            statement.close();
+            if (!connection.getAutoCommit()) {
+                // A failed transaction is rolled back by the server even when committed
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to close result stream cleanly: " + e.getMessage());
+        } finally {
+            if (onClose != null) {
+                onClose.run();
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to return connection to the pool: " + e.getMessage());
+            }
+        }
+    }
+}
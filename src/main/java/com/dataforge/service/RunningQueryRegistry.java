@@ -0,0 +1,168 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.RunningQueryInfo;
+import com.dataforge.exception.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the ad-hoc statements that are currently executing or streaming, so they can be listed and cancelled.
+ * Each registered statement is cancelled automatically once its timeout elapses.
+ */
+@Service
+public class RunningQueryRegistry {
+
+    private final Map<String, RunningQuery> runningQueries = new ConcurrentHashMap<>();
+    // Cancellations requested under a caller-chosen id before its statement was registered
+    private final Set<String> pendingCancels = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "query-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private ConnectionPoolRegistry connectionPoolRegistry;
+
+    /**
+     * Registers a statement that is about to be executed and returns its query id.
+     * The caller must call {@link #deregister(String)} once the statement is closed.
+     */
+    public String register(Long dbId, String sql, Statement statement, int timeoutSeconds) {
+        return register(UUID.randomUUID().toString(), dbId, sql, statement, timeoutSeconds);
+    }
+
+    /**
+     * Same as {@link #register(Long, String, Statement, int)}, under an id chosen by the caller.
+     * Throws IllegalStateException, without registering, if {@link #cancelOrPreempt(String)} already asked
+     * for the id to be cancelled; the caller must then not execute the statement.
+     */
+    public String register(String queryId, Long dbId, String sql, Statement statement, int timeoutSeconds) {
+        ScheduledFuture<?> timeoutTask = timeoutScheduler.schedule(() -> {
+            System.out.println("Query " + queryId + " on DB ID " + dbId + " exceeded its " + timeoutSeconds + "s timeout, cancelling.");
+            cancelQuietly(queryId);
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        runningQueries.put(queryId, new RunningQuery(dbId, sql, statement, backendPid(statement), Instant.now(), timeoutSeconds, timeoutTask));
+        // Registered before the check, so a concurrent cancelOrPreempt either sees the statement or leaves the mark
+        if (pendingCancels.remove(queryId)) {
+            deregister(queryId);
+            throw new IllegalStateException("Query " + queryId + " was cancelled before it started.");
+        }
+        return queryId;
+    }
+
+    /**
+     * Cancels the statement registered under the id or, when none is registered yet (e.g. a query job still
+     * waiting for a connection), makes its registration fail so it never runs. Call {@link #clearPendingCancel(String)}
+     * once the id can no longer be registered.
+     */
+    public void cancelOrPreempt(String queryId) {
+        pendingCancels.add(queryId);
+        // Whoever removes the mark acts on it: this call if the statement is already registered, register otherwise
+        if (runningQueries.containsKey(queryId) && pendingCancels.remove(queryId)) {
+            try {
+                cancel(queryId);
+            } catch (ResourceNotFoundException e) {
+                // The statement finished in the meantime
+            }
+        }
+    }
+
+    public void clearPendingCancel(String queryId) {
+        pendingCancels.remove(queryId);
+    }
+
+    public void deregister(String queryId) {
+        RunningQuery query = runningQueries.remove(queryId);
+        if (query != null) {
+            query.timeoutTask().cancel(false);
+        }
+    }
+
+    public List<RunningQueryInfo> list(Long dbId) {
+        Instant now = Instant.now();
+        return runningQueries.entrySet().stream()
+                .filter(entry -> dbId == null || entry.getValue().dbId().equals(dbId))
+                .map(entry -> {
+                    RunningQuery query = entry.getValue();
+                    return new RunningQueryInfo(entry.getKey(), query.dbId(), query.sql(), query.startedAt(),
+                            Duration.between(query.startedAt(), now).toMillis(), query.timeoutSeconds(), query.backendPid());
+                })
+                .sorted(Comparator.comparing(RunningQueryInfo::startedAt))
+                .toList();
+    }
+
+    /**
+     * Asks Postgres to cancel the statement. Statement.cancel is tried first; if the driver can't send the
+     * cancel request, pg_cancel_backend is called for the statement's backend from another pooled connection.
+     */
+    public void cancel(String queryId) {
+        RunningQuery query = runningQueries.get(queryId);
+        if (query == null) {
+            throw new ResourceNotFoundException("No running query found with id: " + queryId);
+        }
+        try {
+            query.statement().cancel();
+        } catch (SQLException e) {
+            if (query.backendPid() < 0) {
+                throw new IllegalStateException("Failed to cancel query " + queryId + ": " + e.getMessage(), e);
+            }
+            cancelBackend(query.dbId(), query.backendPid());
+        }
+    }
+
+    private void cancelQuietly(String queryId) {
+        try {
+            cancel(queryId);
+        } catch (RuntimeException e) {
+            // The query finished in the meantime, or could not be cancelled
+            System.err.println("Failed to cancel query " + queryId + ": " + e.getMessage());
+        }
+    }
+
+    private void cancelBackend(Long dbId, int backendPid) {
+        // Goes straight to the pool: a cancel must not queue behind the very traffic it is trying to stop
+        try (Connection conn = connectionPoolRegistry.getDataSource(dbId).getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT pg_cancel_backend(?)")) {
+            pstmt.setInt(1, backendPid);
+            pstmt.execute();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to cancel backend " + backendPid + " on DB ID " + dbId + ": " + e.getMessage(), e);
+        }
+    }
+
+    private int backendPid(Statement statement) {
+        try {
+            return statement.getConnection().unwrap(PGConnection.class).getBackendPID();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    private record RunningQuery(Long dbId, String sql, Statement statement, int backendPid, Instant startedAt,
+                                int timeoutSeconds, ScheduledFuture<?> timeoutTask) {}
+}
@@ -0,0 +1,101 @@
+package com.dataforge.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Issues and checks short-lived session tokens that stand in for the master password on privileged requests.
+ * A token is base64url(expiry seconds + random nonce) "." base64url(HMAC-SHA256 of that payload).
+ * Checking one is a single HMAC and a constant-time comparison, instead of a BCrypt match.
+ * The signing key is random per process unless configured, so a restart invalidates all tokens.
+ */
+@Service
+public class SessionTokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int PAYLOAD_BYTES = Long.BYTES + 16; // Expiry followed by a nonce
+    private static final int MAC_BYTES = 32;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private final Base64.Decoder decoder = Base64.getUrlDecoder();
+    private SecretKeySpec signingKey;
+    // Mac instances aren't thread-safe, so each request thread keeps its own
+    private ThreadLocal<Mac> macs;
+
+    @Value("${dataforge.session.signing-key:}")
+    private String configuredKey; // Optional base64 key, e.g. to keep tokens valid across restarts
+
+    @Value("${dataforge.session.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @PostConstruct
+    public void init() {
+        byte[] key;
+        if (configuredKey != null && !configuredKey.isBlank()) {
+            key = Base64.getDecoder().decode(configuredKey.trim());
+        } else {
+            key = new byte[32];
+            secureRandom.nextBytes(key);
+        }
+        signingKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(signingKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    public IssuedToken issue() {
+        Instant expiresAt = Instant.now().plusSeconds(ttlMinutes * 60);
+        byte[] payload = new byte[PAYLOAD_BYTES];
+        secureRandom.nextBytes(payload); // The nonce; the leading bytes are then overwritten with the expiry
+        ByteBuffer.wrap(payload).putLong(expiresAt.getEpochSecond());
+        String token = encoder.encodeToString(payload) + "." + encoder.encodeToString(macs.get().doFinal(payload));
+        return new IssuedToken(token, expiresAt);
+    }
+
+    /**
+     * True when the token was issued by this service (or one sharing its key) and has not expired.
+     */
+    public boolean isValid(String token) {
+        if (token == null) {
+            return false;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return false;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = decoder.decode(token.substring(0, dot));
+            signature = decoder.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (payload.length != PAYLOAD_BYTES || signature.length != MAC_BYTES) {
+            return false;
+        }
+        if (!MessageDigest.isEqual(macs.get().doFinal(payload), signature)) {
+            return false;
+        }
+        return ByteBuffer.wrap(payload).getLong() > Instant.now().getEpochSecond();
+    }
+
+    public record IssuedToken(String token, Instant expiresAt) {}
+}
@@ -19,8 +19,14 @@ public class SettingsService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
+    // BCrypt hash of the master password, kept after the first lookup so verification skips H2
+    private volatile String masterPasswordHash;
+
     public boolean isMasterPasswordSet() {
-        return settingsRepository.findById(MASTER_PASSWORD_KEY).isPresent();
+        return loadMasterPasswordHash() != null;
     }
 
     public void setMasterPassword(String password) {
@@ -29,13 +35,34 @@ public class SettingsService {
         }
         String hashedPassword = passwordEncoder.encode(password);
         settingsRepository.save(new AppSetting(MASTER_PASSWORD_KEY, hashedPassword));
+        masterPasswordHash = hashedPassword;
     }
 
     public boolean verifyMasterPassword(String rawPassword) {
-        Optional<AppSetting> setting = settingsRepository.findById(MASTER_PASSWORD_KEY);
-        if (setting.isEmpty()) {
+        String hash = loadMasterPasswordHash();
+        if (hash == null || rawPassword == null) {
             return false; // No password set, so verification fails
         }
-        return passwordEncoder.matches(rawPassword, setting.get().getSettingValue());
+        return passwordEncoder.matches(rawPassword, hash);
+    }
+
+    /**
+     * Accepts a privileged request carrying either a valid session token or the master password.
+     * The token is checked first, since that avoids the BCrypt match.
+     */
+    public boolean isAuthorized(String masterPassword, String sessionToken) {
+        return sessionTokenService.isValid(sessionToken) || verifyMasterPassword(masterPassword);
+    }
+
+    private String loadMasterPasswordHash() {
+        String hash = masterPasswordHash;
+        if (hash == null) {
+            Optional<AppSetting> setting = settingsRepository.findById(MASTER_PASSWORD_KEY);
+            if (setting.isPresent()) {
+                hash = setting.get().getSettingValue();
+                masterPasswordHash = hash;
+            }
+        }
+        return hash;
     }
 }
@@ -0,0 +1,247 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.ColumnDefinition;
+import com.dataforge.dto.CopyImportResponse;
+import com.dataforge.exception.InvalidInputException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves table data in and out of managed instances through PostgreSQL COPY,
+ * streaming between the HTTP body and the database without buffering the payload.
+ */
+@Service
+public class TableCopyService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private ConnectionPoolRegistry connectionPoolRegistry;
+    @Autowired
+    private TableManagerService tableManagerService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    /**
+     * Streams CSV into the table with COPY ... FROM STDIN. The first line must be a header
+     * naming the target columns; it is checked against the cached table schema.
+     */
+    public CopyImportResponse importCsv(Long dbId, String tableName, InputStream body) {
+        BufferedInputStream input = new BufferedInputStream(body, COPY_BUFFER_SIZE);
+        List<String> columns;
+        try {
+            columns = parseCsvHeader(readLine(input));
+        } catch (IOException e) {
+            throw new InvalidInputException("Failed to read CSV header: " + e.getMessage());
+        }
+        List<String> targetColumns = resolveColumns(dbId, tableName, columns);
+
+        String copySql = String.format("COPY %s (%s) FROM STDIN WITH (FORMAT csv)", tableName, String.join(", ", targetColumns));
+        System.out.println("Executing SQL: " + copySql);
+
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
+            CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+            long rowsCopied = copyManager.copyIn(copySql, input, COPY_BUFFER_SIZE);
+            queryResultCache.invalidateTable(dbId, tableName);
+            return new CopyImportResponse(tableName, targetColumns, rowsCopied);
+        } catch (SQLException | IOException e) {
+            throw new InvalidInputException("Failed to import CSV into table '" + tableName + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams NDJSON into the table with COPY ... FROM STDIN. The keys of the first record
+     * define the target columns; each record is re-encoded as a CSV row on the fly.
+     */
+    public CopyImportResponse importNdjson(Long dbId, String tableName, InputStream body) {
+        try (MappingIterator<Map<String, Object>> records = objectMapper
+                .readerFor(new TypeReference<Map<String, Object>>() {})
+                .readValues(body)) {
+
+            if (!hasNextRecord(records)) {
+                throw new InvalidInputException("NDJSON input is empty.");
+            }
+            Map<String, Object> first = nextRecord(records);
+            // Records are read by their own keys; the COPY names the columns those keys resolve to
+            List<String> columns = new ArrayList<>(first.keySet());
+            List<String> targetColumns = resolveColumns(dbId, tableName, columns);
+            Set<String> columnSet = Set.copyOf(columns);
+
+            String copySql = String.format("COPY %s (%s) FROM STDIN WITH (FORMAT csv)", tableName, String.join(", ", targetColumns));
+            System.out.println("Executing SQL: " + copySql);
+
+            try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
+                CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+                try {
+                    StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+                    appendCsvRow(buffer, first, columns);
+                    while (hasNextRecord(records)) {
+                        Map<String, Object> record = nextRecord(records);
+                        if (!columnSet.containsAll(record.keySet())) {
+                            throw new InvalidInputException("Record keys " + record.keySet() + " do not match the columns " + columns + " of the first record.");
+                        }
+                        appendCsvRow(buffer, record, columns);
+                        if (buffer.length() >= COPY_BUFFER_SIZE) {
+                            writeToCopy(copyIn, buffer);
+                        }
+                    }
+                    writeToCopy(copyIn, buffer);
+                    long rowsCopied = copyIn.endCopy();
+                    queryResultCache.invalidateTable(dbId, tableName);
+                    return new CopyImportResponse(tableName, targetColumns, rowsCopied);
+                } finally {
+                    if (copyIn.isActive()) {
+                        copyIn.cancelCopy();
+                    }
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new InvalidInputException("Failed to import NDJSON into table '" + tableName + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prepares a CSV export of the whole table with COPY ... TO STDOUT. The table is checked up front;
+     * the returned body then copies rows straight into the response, optionally gzip-compressed.
+     */
+    public StreamingResponseBody exportCsv(Long dbId, String tableName, boolean gzip) {
+        List<String> columns = tableManagerService.getTableSchema(dbId, tableName).columns().stream()
+                .map(ColumnDefinition::name)
+                .toList();
+        String copySql = String.format("COPY %s (%s) TO STDOUT WITH (FORMAT csv, HEADER)", tableName, String.join(", ", columns));
+        System.out.println("Executing SQL: " + copySql);
+
+        return outputStream -> {
+            ReleasableGzipStream gzipStream = gzip ? new ReleasableGzipStream(outputStream) : null;
+            OutputStream target = gzipStream != null ? gzipStream : outputStream;
+            try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
+                conn.unwrap(PGConnection.class).getCopyAPI().copyOut(copySql, target);
+                if (gzipStream != null) {
+                    gzipStream.finish();
+                }
+                target.flush();
+            } catch (SQLException e) {
+                // Headers are already committed at this point, so the failure can only end the stream
+                throw new IOException("Failed to export table '" + tableName + "': " + e.getMessage(), e);
+            } finally {
+                if (gzipStream != null) {
+                    gzipStream.release();
+                }
+            }
+        };
+    }
+
+    // Returns the table's names for the input's columns, resolved like CRUD does, in input order
+    private List<String> resolveColumns(Long dbId, String tableName, List<String> columns) {
+        if (columns.isEmpty()) {
+            throw new InvalidInputException("The input must name at least one column.");
+        }
+        Map<String, ColumnDefinition> tableColumns = tableManagerService.getTableSchema(dbId, tableName).columns().stream()
+                .collect(Collectors.toMap(ColumnDefinition::name, c -> c, (a, b) -> a));
+        List<String> resolved = columns.stream()
+                .map(column -> TableManagerService.requireColumn(tableColumns, tableName, column).name())
+                .toList();
+        if (Set.copyOf(resolved).size() != resolved.size()) {
+            throw new InvalidInputException("The input names a column more than once: " + columns);
+        }
+        return resolved;
+    }
+
+    // MappingIterator wraps parse errors of a malformed line in unchecked exceptions; they are the client's fault
+    private boolean hasNextRecord(MappingIterator<Map<String, Object>> records) {
+        try {
+            return records.hasNext();
+        } catch (RuntimeException e) {
+            throw new InvalidInputException("Malformed NDJSON record: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> nextRecord(MappingIterator<Map<String, Object>> records) {
+        try {
+            return records.next();
+        } catch (RuntimeException e) {
+            throw new InvalidInputException("Malformed NDJSON record: " + e.getMessage());
+        }
+    }
+
+    private String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        if (line.size() == 0 && b == -1) {
+            throw new InvalidInputException("CSV input is empty.");
+        }
+        return line.toString(StandardCharsets.UTF_8).replaceFirst("\r$", "");
+    }
+
+    private List<String> parseCsvHeader(String header) {
+        return Arrays.stream(header.split(","))
+                .map(String::trim)
+                .map(name -> name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"") ? name.substring(1, name.length() - 1) : name)
+                .toList();
+    }
+
+    private void appendCsvRow(StringBuilder buffer, Map<String, Object> record, List<String> columns) throws JsonProcessingException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            Object value = record.get(columns.get(i));
+            if (value == null) {
+                continue; // An unquoted empty field is NULL in COPY's CSV format
+            }
+            String text = (value instanceof Map || value instanceof List) ? objectMapper.writeValueAsString(value) : value.toString();
+            buffer.append('"').append(text.replace("\"", "\"\"")).append('"');
+        }
+        buffer.append('\n');
+    }
+
+    private void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    // Neither finish() nor a failed copy frees the Deflater's native memory, and close() would also write a
+    // valid gzip trailer after a failed copy; release() only ends the Deflater
+    private static class ReleasableGzipStream extends GZIPOutputStream {
+        ReleasableGzipStream(OutputStream out) throws IOException {
+            super(out, COPY_BUFFER_SIZE);
+        }
+
+        void release() {
+            def.end();
+        }
+    }
+}
@@ -3,40 +3,38 @@ package com.dataforge.service;
 import com.dataforge.dto.*;
 import com.dataforge.exception.InvalidInputException;
 import com.dataforge.exception.ResourceNotFoundException;
-import com.dataforge.model.DatabaseInstance;
-import com.dataforge.repository.DatabaseInstanceRepository;
-import com.dataforge.util.EncryptionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class TableManagerService {
 
+    private static final String SCHEMA_CACHE = "tableSchemas";
+
+    @Autowired
+    private ConnectionPoolRegistry connectionPoolRegistry;
     @Autowired
-    private DatabaseInstanceRepository instanceRepository;
+    private QueryResultCache queryResultCache;
     @Autowired
-    private EncryptionUtil encryptionUtil;
+    private CacheManager cacheManager;
 
-    @CacheEvict(value = "tableSchemas", key = "#dbId + '-' + #request.tableName()")
     public void createTable(Long dbId, CreateTableRequest request) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String createTableSql = buildCreateTableSql(request);
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(createTableSql);
+            evictSchema(dbId, request.tableName());
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to create table: " + e.getMessage());
         }
@@ -44,12 +42,9 @@ public class TableManagerService {
 
     public List<String> listTables(Long dbId) {
         // This could also be cached, but it's less critical than getTableSchema
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
         List<String> tableNames = new ArrayList<>();
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword)) {
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
             DatabaseMetaData metaData = conn.getMetaData();
             try (ResultSet rs = metaData.getTables(null, "public", "%", new String[]{"TABLE"})) {
                 while (rs.next()) {
@@ -62,85 +57,157 @@ public class TableManagerService {
         return tableNames;
     }
 
-    @Cacheable(value = "tableSchemas", key = "#dbId + '-' + #tableName")
+    /**
+     * Returns the table's columns, cached under the stored table name so "Users" and "users" share one entry
+     * and one eviction. An exact stored name always wins resolution, so a cache hit on the requested name is
+     * final; any other spelling costs a pg_class lookup before the cache is consulted.
+     */
     public TableSchemaResponse getTableSchema(Long dbId, String tableName) {
-        System.out.println("--- EXECUTING getTableSchema (NOT FROM CACHE) for " + tableName + " ---");
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
+        Cache cache = cacheManager.getCache(SCHEMA_CACHE);
+        TableSchemaResponse cached = cache.get(schemaKey(dbId, tableName), TableSchemaResponse.class);
+        if (cached != null) {
+            return cached;
+        }
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
+            String resolvedName = resolveTableName(conn, tableName);
+            if (resolvedName == null) {
+                throw new ResourceNotFoundException("Table '" + tableName + "' not found in database ID " + dbId);
+            }
+            TableSchemaResponse schema = cache.get(schemaKey(dbId, resolvedName), TableSchemaResponse.class);
+            if (schema == null) {
+                schema = loadTableSchema(conn, dbId, tableName, resolvedName);
+                cache.put(schemaKey(dbId, resolvedName), schema);
+            }
+            return schema;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to get table schema: " + e.getMessage(), e);
+        }
+    }
+
+    private TableSchemaResponse loadTableSchema(Connection conn, Long dbId, String tableName, String resolvedName) throws SQLException {
+        System.out.println("--- EXECUTING getTableSchema (NOT FROM CACHE) for " + resolvedName + " ---");
         List<ColumnDefinition> columns = new ArrayList<>();
         Set<String> primaryKeyColumns = new HashSet<>();
+        DatabaseMetaData metaData = conn.getMetaData();
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword)) {
-            DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet pkRs = metaData.getPrimaryKeys(null, "public", resolvedName)) {
+            while (pkRs.next()) {
+                primaryKeyColumns.add(pkRs.getString("COLUMN_NAME"));
+            }
+        }
 
-            try (ResultSet pkRs = metaData.getPrimaryKeys(null, "public", tableName)) {
-                while (pkRs.next()) {
-                    primaryKeyColumns.add(pkRs.getString("COLUMN_NAME"));
+        // getColumns takes a LIKE pattern, so _ and % in the name must not act as wildcards
+        try (ResultSet rs = metaData.getColumns(null, "public", escapePattern(resolvedName, metaData.getSearchStringEscape()), "%")) {
+            if (!rs.isBeforeFirst()) {
+                throw new ResourceNotFoundException("Table '" + tableName + "' not found in database ID " + dbId);
+            }
+            while (rs.next()) {
+                String columnName = rs.getString("COLUMN_NAME");
+                String dataType = rs.getString("TYPE_NAME");
+                int size = rs.getInt("COLUMN_SIZE");
+                if (dataType.equalsIgnoreCase("varchar") || dataType.equalsIgnoreCase("char")) {
+                    dataType += "(" + size + ")";
                 }
+                boolean isNullable = "YES".equalsIgnoreCase(rs.getString("IS_NULLABLE"));
+                boolean isPrimaryKey = primaryKeyColumns.contains(columnName);
+                
+                columns.add(new ColumnDefinition(columnName, dataType, isPrimaryKey, isNullable, false));
             }
+        }
+        return new TableSchemaResponse(resolvedName, columns);
+    }
 
-            try (ResultSet rs = metaData.getColumns(null, "public", tableName, "%")) {
-                if (!rs.isBeforeFirst()) {
-                    throw new ResourceNotFoundException("Table '" + tableName + "' not found in database ID " + dbId);
-                }
-                while (rs.next()) {
-                    String columnName = rs.getString("COLUMN_NAME");
-                    String dataType = rs.getString("TYPE_NAME");
-                    int size = rs.getInt("COLUMN_SIZE");
-                    if (dataType.equalsIgnoreCase("varchar") || dataType.equalsIgnoreCase("char")) {
-                        dataType += "(" + size + ")";
-                    }
-                    boolean isNullable = "YES".equalsIgnoreCase(rs.getString("IS_NULLABLE"));
-                    boolean isPrimaryKey = primaryKeyColumns.contains(columnName);
-                    
-                    columns.add(new ColumnDefinition(columnName, dataType, isPrimaryKey, !isNullable, false));
-                }
+    /**
+     * Drops every cached schema of the instance, e.g. after an ad-hoc statement that may have run DDL.
+     */
+    public void evictSchemas(Long dbId) {
+        Cache cache = cacheManager.getCache(SCHEMA_CACHE);
+        if (cache == null) {
+            return;
+        }
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            String prefix = dbId + "-";
+            nativeCache.asMap().keySet().removeIf(key -> key.toString().startsWith(prefix));
+        } else {
+            cache.clear();
+        }
+    }
+
+    // DDL here uses the name unquoted, which Postgres folds to lower case; the exact spelling covers a caller that
+    // already sent the stored name
+    private void evictSchema(Long dbId, String tableName) {
+        Cache cache = cacheManager.getCache(SCHEMA_CACHE);
+        cache.evict(schemaKey(dbId, tableName));
+        cache.evict(schemaKey(dbId, tableName.toLowerCase()));
+    }
+
+    private String schemaKey(Long dbId, String tableName) {
+        return dbId + "-" + tableName;
+    }
+
+    /**
+     * Looks a column up the way Postgres resolves an identifier: the exact name first, else its lower-case folding,
+     * so "Email" still finds email. Shared by CRUD and COPY imports so both accept the same payloads.
+     */
+    static ColumnDefinition requireColumn(Map<String, ColumnDefinition> tableColumns, String tableName, String name) {
+        ColumnDefinition column = tableColumns.get(name);
+        if (column == null) {
+            column = tableColumns.get(name.toLowerCase());
+        }
+        if (column == null) {
+            throw new InvalidInputException("Unknown column '" + name + "' for table '" + tableName + "'.");
+        }
+        return column;
+    }
+
+    // The stored name of a table in the public schema: an exact match first, else the lower-case folding
+    // Postgres applies to an unquoted name, so "Users" still finds users
+    private String resolveTableName(Connection conn, String tableName) throws SQLException {
+        String sql = "SELECT c.relname FROM pg_catalog.pg_class c JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                + "WHERE n.nspname = 'public' AND c.relkind IN ('r', 'p', 'v', 'm', 'f') AND c.relname IN (?, lower(?)) "
+                + "ORDER BY c.relname = ? DESC LIMIT 1";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, tableName);
+            pstmt.setString(3, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to get table schema: " + e.getMessage(), e);
         }
-        return new TableSchemaResponse(tableName, columns);
     }
 
-    @CacheEvict(value = "tableSchemas", key = "#dbId + '-' + #tableName")
+    private String escapePattern(String name, String escape) {
+        return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
     public void deleteTable(Long dbId, String tableName) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
         String dropTableSql = "DROP TABLE IF EXISTS " + tableName + " CASCADE";
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(dropTableSql);
+            queryResultCache.invalidateTable(dbId, tableName);
+            evictSchema(dbId, tableName);
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to delete table '" + tableName + "': " + e.getMessage());
         }
     }
 
-    @CacheEvict(value = "tableSchemas", key = "#dbId + '-' + #tableName")
     public void addColumn(Long dbId, String tableName, ColumnDefinition columnDefinition) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String addColumnSql = String.format("ALTER TABLE %s ADD COLUMN %s", tableName, buildColumnDefinitionSql(columnDefinition));
         
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(addColumnSql);
+            queryResultCache.invalidateTable(dbId, tableName);
+            evictSchema(dbId, tableName);
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to add column '" + columnDefinition.name() + "' to table '" + tableName + "': " + e.getMessage());
         }
     }
 
-    @CacheEvict(value = "tableSchemas", key = "#dbId + '-' + #tableName")
     public void modifyColumn(Long dbId, String tableName, String oldColumnName, ModifyColumnRequest request) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
 
             String currentColumnName = oldColumnName;
@@ -165,23 +232,22 @@ public class TableManagerService {
                 }
                 stmt.execute(alterNullabilitySql);
             }
+            queryResultCache.invalidateTable(dbId, tableName);
+            evictSchema(dbId, tableName);
 
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to modify column '" + oldColumnName + "' in table '" + tableName + "': " + e.getMessage());
         }
     }
 
-    @CacheEvict(value = "tableSchemas", key = "#dbId + '-' + #tableName")
     public void deleteColumn(Long dbId, String tableName, String columnName) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String dropColumnSql = String.format("ALTER TABLE %s DROP COLUMN %s", tableName, columnName);
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(dropColumnSql);
+            queryResultCache.invalidateTable(dbId, tableName);
+            evictSchema(dbId, tableName);
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to delete column '" + columnName + "' from table '" + tableName + "': " + e.getMessage());
         }
@@ -190,28 +256,22 @@ public class TableManagerService {
     // ... (el resto de los métodos no necesitan cambios por ahora)
 
     public void dropForeignKey(Long dbId, String tableName, String constraintName) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
-
         String dropFkSql = String.format("ALTER TABLE %s DROP CONSTRAINT %s", tableName, constraintName);
         System.out.println("Executing SQL: " + dropFkSql);
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword);
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId);
              Statement stmt = conn.createStatement()) {
             stmt.execute(dropFkSql);
+            queryResultCache.invalidateTable(dbId, tableName);
         } catch (SQLException e) {
             throw new InvalidInputException("Failed to drop foreign key constraint '" + constraintName + "' from table '" + tableName + "': " + e.getMessage());
         }
     }
 
     public List<TableRelationship> getTableRelationships(Long dbId, String tableName) {
-        DatabaseInstance instance = findInstance(dbId);
-        String url = buildJdbcUrl(instance);
-        String decryptedPassword = encryptionUtil.decrypt(instance.getDbPassword());
         List<TableRelationship> relationships = new ArrayList<>();
 
-        try (Connection conn = DriverManager.getConnection(url, instance.getDbUser(), decryptedPassword)) {
+        try (Connection conn = connectionPoolRegistry.getConnection(dbId)) {
             DatabaseMetaData metaData = conn.getMetaData();
             try (ResultSet rs = metaData.getImportedKeys(null, "public", tableName)) {
                 while (rs.next()) {
@@ -230,15 +290,6 @@ public class TableManagerService {
         return relationships;
     }
 
-    private DatabaseInstance findInstance(Long dbId) {
-        return instanceRepository.findById(dbId)
-                .orElseThrow(() -> new ResourceNotFoundException("Database instance not found with id: " + dbId));
-    }
-
-    private String buildJdbcUrl(DatabaseInstance instance) {
-        return String.format("jdbc:postgresql://%s:%d/%s", instance.getHost(), instance.getPort(), instance.getDbName());
-    }
-
     private String buildCreateTableSql(CreateTableRequest request) {
         StringBuilder sql = new StringBuilder("CREATE TABLE ")
                 .append(request.tableName())
@@ -0,0 +1,111 @@
+package com.dataforge.util;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.arrow.adapter.jdbc.ArrowVectorIterator;
+import org.apache.arrow.adapter.jdbc.JdbcFieldInfo;
+import org.apache.arrow.adapter.jdbc.JdbcToArrow;
+import org.apache.arrow.adapter.jdbc.JdbcToArrowConfig;
+import org.apache.arrow.adapter.jdbc.JdbcToArrowConfigBuilder;
+import org.apache.arrow.adapter.jdbc.JdbcToArrowUtils;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Calendar;
+
+/**
+ * Writes a ResultSet as an Arrow IPC stream. Rows are read into column vectors batchRows at a time and each
+ * batch is written before the next is read, reusing the same vectors, so memory stays bounded by one batch.
+ * Postgres types Arrow has no mapping for (uuid, json, arrays, ...) are sent as their text form.
+ */
+@Component
+public class ArrowResultSetWriter {
+
+    private static final Calendar UTC = JdbcToArrowUtils.getUtcCalendar();
+    // Widest precision a 128-bit Arrow decimal can hold
+    private static final int MAX_DECIMAL_PRECISION = 38;
+
+    private RootAllocator rootAllocator;
+
+    @Value("${dataforge.arrow.batch-rows:8192}")
+    private int batchRows;
+
+    @Value("${dataforge.arrow.max-request-bytes:268435456}")
+    private long maxRequestBytes;
+
+    public void write(ResultSet rs, OutputStream out) throws IOException, SQLException {
+        try (BufferAllocator allocator = allocator().newChildAllocator("arrow-response", 0, maxRequestBytes)) {
+            JdbcToArrowConfig config = new JdbcToArrowConfigBuilder(allocator, UTC)
+                    .setTargetBatchSize(batchRows)
+                    .setReuseVectorSchemaRoot(true)
+                    .setJdbcToArrowTypeConverter(this::toArrowType)
+                    .setBigDecimalRoundingMode(RoundingMode.UNNECESSARY)
+                    .build();
+
+            try (ArrowVectorIterator batches = JdbcToArrow.sqlToArrowVectorIterator(rs, config)) {
+                if (!batches.hasNext()) {
+                    // No rows: still send the schema so readers know the columns
+                    try (VectorSchemaRoot empty = VectorSchemaRoot.create(JdbcToArrowUtils.jdbcToArrowSchema(rs.getMetaData(), config), allocator);
+                         ArrowStreamWriter writer = new ArrowStreamWriter(empty, null, Channels.newChannel(out))) {
+                        writer.start();
+                        writer.end();
+                    }
+                    return;
+                }
+                // With reuse enabled every batch is loaded into this same root
+                VectorSchemaRoot root = batches.next();
+                try (ArrowStreamWriter writer = new ArrowStreamWriter(root, null, Channels.newChannel(out))) {
+                    writer.start();
+                    writer.writeBatch();
+                    while (batches.hasNext()) {
+                        batches.next();
+                        writer.writeBatch();
+                    }
+                    writer.end();
+                }
+            }
+        }
+    }
+
+    private ArrowType toArrowType(JdbcFieldInfo field) {
+        return switch (field.getJdbcType()) {
+            case Types.NUMERIC, Types.DECIMAL -> field.getPrecision() >= 1 && field.getPrecision() <= MAX_DECIMAL_PRECISION
+                    ? new ArrowType.Decimal(field.getPrecision(), field.getScale(), 128)
+                    : ArrowType.Utf8.INSTANCE; // Unconstrained numeric can exceed any Arrow decimal
+            case Types.OTHER, Types.ARRAY, Types.STRUCT, Types.SQLXML, Types.JAVA_OBJECT, Types.DISTINCT -> ArrowType.Utf8.INSTANCE;
+            default -> {
+                try {
+                    yield JdbcToArrowUtils.getArrowTypeFromJdbcType(field, UTC);
+                } catch (UnsupportedOperationException e) {
+                    yield ArrowType.Utf8.INSTANCE;
+                }
+            }
+        };
+    }
+
+    // Created on first use, so the application still starts where java.nio isn't opened for Arrow
+    private synchronized BufferAllocator allocator() {
+        if (rootAllocator == null) {
+            rootAllocator = new RootAllocator();
+        }
+        return rootAllocator;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (rootAllocator != null) {
+            rootAllocator.close();
+        }
+    }
+}
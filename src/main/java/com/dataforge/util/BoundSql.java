@@ -0,0 +1,76 @@
+package com.dataforge.util;
+
+import com.dataforge.exception.InvalidInputException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL text with JDBC {@code ?} placeholders and the values to bind to them, in order.
+ * Named parameters ({@code :name}) are rewritten to placeholders; quoted literals, quoted identifiers,
+ * comments, dollar-quoted bodies and {@code ::} casts are left untouched.
+ */
+public record BoundSql(String sql, List<Object> params) {
+
+    public static BoundSql of(String sql) {
+        return new BoundSql(sql, List.of());
+    }
+
+    /**
+     * Builds the statement from positional values (bound to {@code ?} in order) or named values
+     * (bound to {@code :name}); at most one of the two may be given.
+     */
+    public static BoundSql of(String sql, List<Object> positional, Map<String, Object> named) {
+        boolean hasPositional = positional != null && !positional.isEmpty();
+        boolean hasNamed = named != null && !named.isEmpty();
+        if (hasPositional && hasNamed) {
+            throw new InvalidInputException("Use either positional or named parameters, not both.");
+        }
+        if (hasNamed) {
+            return bindNamed(sql, named);
+        }
+        // Copied through an ArrayList since List.copyOf rejects null values
+        return new BoundSql(sql, hasPositional ? Collections.unmodifiableList(new ArrayList<>(positional)) : List.of());
+    }
+
+    public boolean hasParams() {
+        return !params.isEmpty();
+    }
+
+    private static BoundSql bindNamed(String sql, Map<String, Object> named) {
+        StringBuilder rewritten = new StringBuilder(sql.length());
+        List<Object> values = new ArrayList<>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == ':' && i + 1 < length && sql.charAt(i + 1) == ':') {
+                rewritten.append("::"); // Type cast
+                i += 2;
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 2;
+                while (end < length && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                String name = sql.substring(i + 1, end);
+                if (!named.containsKey(name)) {
+                    throw new InvalidInputException("No value given for parameter ':" + name + "'.");
+                }
+                values.add(named.get(name));
+                rewritten.append('?');
+                i = end;
+            } else if (c == '?') {
+                rewritten.append("??"); // A literal '?' (e.g. a jsonb operator) must be escaped for the driver
+                i++;
+            } else {
+                // Quoted text, comments and dollar-quoted bodies are copied whole
+                int end = SqlScriptSplitter.skipToken(sql, i);
+                rewritten.append(sql, i, end);
+                i = end;
+            }
+        }
+        return new BoundSql(rewritten.toString(), Collections.unmodifiableList(values));
+    }
+}
@@ -0,0 +1,162 @@
+package com.dataforge.util;
+
+import com.dataforge.dto.ColumnDefinition;
+import com.dataforge.exception.InvalidInputException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Converts request values (JSON scalars or query-string text) to the Java type matching a column's
+ * Postgres type, and binds them with the corresponding JDBC type so comparisons stay on the column's type.
+ */
+@Component
+public class ColumnValueBinder {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void bind(PreparedStatement pstmt, int index, ColumnDefinition column, Object value) throws SQLException {
+        String type = baseType(column.dataType());
+        if (value == null) {
+            pstmt.setNull(index, sqlType(type));
+            return;
+        }
+        try {
+            switch (type) {
+                case "int2", "smallint", "smallserial" -> pstmt.setObject(index, toNumber(value).shortValueExact(), Types.SMALLINT);
+                case "int4", "integer", "serial" -> pstmt.setObject(index, toNumber(value).intValueExact(), Types.INTEGER);
+                case "int8", "bigint", "bigserial" -> pstmt.setObject(index, toNumber(value).longValueExact(), Types.BIGINT);
+                case "numeric", "decimal" -> pstmt.setObject(index, toNumber(value), Types.NUMERIC);
+                case "float4", "real" -> pstmt.setObject(index, toNumber(value).floatValue(), Types.REAL);
+                case "float8", "double precision" -> pstmt.setObject(index, toNumber(value).doubleValue(), Types.DOUBLE);
+                case "bool", "boolean" -> pstmt.setObject(index, toBoolean(value), Types.BOOLEAN);
+                case "date" -> pstmt.setObject(index, LocalDate.parse(value.toString()), Types.DATE);
+                case "time" -> pstmt.setObject(index, LocalTime.parse(value.toString()), Types.TIME);
+                case "timestamp" -> pstmt.setObject(index, LocalDateTime.parse(isoDateTime(value)), Types.TIMESTAMP);
+                case "timestamptz" -> pstmt.setObject(index, toOffsetDateTime(value), Types.TIMESTAMP_WITH_TIMEZONE);
+                case "uuid" -> pstmt.setObject(index, UUID.fromString(value.toString()), Types.OTHER);
+                case "json", "jsonb" -> pstmt.setObject(index, toJson(value), Types.OTHER);
+                case "varchar", "text", "bpchar", "char", "name" -> pstmt.setString(index, value.toString());
+                default -> pstmt.setObject(index, value); // Leave types we don't know to the driver
+            }
+        } catch (IllegalArgumentException | ArithmeticException | DateTimeParseException e) {
+            throw new InvalidInputException("Value '" + value + "' is not valid for column '" + column.name() + "' of type " + column.dataType() + ".");
+        }
+    }
+
+    /**
+     * Binds a request value that has no column to take its type from, e.g. a parameter of an ad-hoc query.
+     * Text is sent untyped so Postgres infers its type from the placeholder's context (a date, a uuid, ...);
+     * JSON objects and arrays are sent as JSON text.
+     */
+    public void bindUntyped(PreparedStatement pstmt, int index, Object value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, Types.NULL);
+        } else if (value instanceof Map || value instanceof List) {
+            pstmt.setObject(index, toJson(value), Types.OTHER);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            pstmt.setObject(index, value);
+        } else {
+            pstmt.setObject(index, value.toString(), Types.OTHER);
+        }
+    }
+
+    /**
+     * Renders a value read from the column as text that {@link #bind} parses back to the same value.
+     */
+    public String toText(ColumnDefinition column, Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return baseType(column.dataType()).equals("timestamptz")
+                    ? timestamp.toInstant().toString()
+                    : timestamp.toLocalDateTime().toString();
+        }
+        return value.toString();
+    }
+
+    private String baseType(String dataType) {
+        int paren = dataType.indexOf('(');
+        return (paren >= 0 ? dataType.substring(0, paren) : dataType).trim().toLowerCase();
+    }
+
+    private int sqlType(String type) {
+        return switch (type) {
+            case "int2", "smallint", "smallserial" -> Types.SMALLINT;
+            case "int4", "integer", "serial" -> Types.INTEGER;
+            case "int8", "bigint", "bigserial" -> Types.BIGINT;
+            case "numeric", "decimal" -> Types.NUMERIC;
+            case "float4", "real" -> Types.REAL;
+            case "float8", "double precision" -> Types.DOUBLE;
+            case "bool", "boolean" -> Types.BOOLEAN;
+            case "date" -> Types.DATE;
+            case "time" -> Types.TIME;
+            case "timestamp" -> Types.TIMESTAMP;
+            case "timestamptz" -> Types.TIMESTAMP_WITH_TIMEZONE;
+            case "varchar", "text", "bpchar", "char", "name" -> Types.VARCHAR;
+            default -> Types.OTHER;
+        };
+    }
+
+    private BigDecimal toNumber(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString());
+        }
+        return new BigDecimal(value.toString().trim());
+    }
+
+    private Boolean toBoolean(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        return switch (value.toString().trim().toLowerCase()) {
+            case "true", "t", "1", "yes" -> true;
+            case "false", "f", "0", "no" -> false;
+            default -> throw new IllegalArgumentException("Not a boolean: " + value);
+        };
+    }
+
+    // Accept "2024-01-31 10:00:00" as well as the ISO "2024-01-31T10:00:00"
+    private String isoDateTime(Object value) {
+        return value.toString().trim().replace(' ', 'T');
+    }
+
+    private OffsetDateTime toOffsetDateTime(Object value) {
+        String text = isoDateTime(value);
+        try {
+            return OffsetDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            // No offset given: treat the value as UTC
+            return LocalDateTime.parse(text).atOffset(ZoneOffset.UTC);
+        }
+    }
+
+    private String toJson(Object value) {
+        if (value instanceof Map || value instanceof List) {
+            try {
+                return objectMapper.writeValueAsString(value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.dataforge.util;
+
+import com.dataforge.exception.InvalidInputException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opaque continuation token for keyset pagination: base64url of
+ * {"k":[key columns],"d":"ASC"|"DESC","v":[last row's key values]}.
+ * Values are carried as text and a NULL value as JSON null, so every row can produce a cursor.
+ */
+public final class KeysetCursor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(List<String> keyColumns, String direction, List<String> values) {
+        Map<String, Object> token = new LinkedHashMap<>();
+        token.put("k", keyColumns);
+        token.put("d", direction);
+        token.put("v", values); // List.of() would reject the NULL values
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(token));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to encode pagination cursor: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the key values of the cursor, in key column order, after checking it was issued for the same key columns
+     * and direction; replaying it with the other direction would skip or repeat rows.
+     */
+    public static List<String> decode(String cursor, List<String> keyColumns, String direction) {
+        JsonNode token;
+        try {
+            token = MAPPER.readTree(Base64.getUrlDecoder().decode(cursor));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidInputException("Invalid pagination cursor.");
+        }
+        if (token == null || !token.path("k").isArray() || !token.path("d").isTextual()
+                || !token.path("v").isArray()) {
+            throw new InvalidInputException("Invalid pagination cursor.");
+        }
+        List<String> tokenColumns = new ArrayList<>();
+        token.path("k").forEach(node -> tokenColumns.add(node.asText()));
+        if (!tokenColumns.equals(keyColumns) || !direction.equals(token.path("d").asText())) {
+            throw new InvalidInputException("The cursor was issued for a different ordering; restart pagination without a cursor.");
+        }
+        List<String> values = new ArrayList<>();
+        token.path("v").forEach(node -> values.add(node.isNull() ? null : node.asText()));
+        if (values.size() != keyColumns.size()) {
+            throw new InvalidInputException("Invalid pagination cursor.");
+        }
+        return values;
+    }
+}
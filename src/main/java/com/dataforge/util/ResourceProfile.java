@@ -0,0 +1,98 @@
+package com.dataforge.util;
+
+import com.dataforge.exception.InvalidInputException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory, CPU and shared-memory limits for a managed container, plus the postgresql.conf settings that fit them.
+ * shared_buffers gets a quarter of the memory and effective_cache_size three quarters; max_connections grows
+ * with memory, and work_mem splits what is left over the connections, allowing a few sort or hash nodes each.
+ */
+public record ResourceProfile(String name, long memoryMb, double cpus, long shmSizeMb) {
+
+    private static final long MIN_MEMORY_MB = 256;
+    private static final long MIN_SHM_SIZE_MB = 64;
+
+    public static final ResourceProfile SMALL = new ResourceProfile("small", 512, 0.5, 128);
+    public static final ResourceProfile MEDIUM = new ResourceProfile("medium", 2048, 1, 256);
+    public static final ResourceProfile LARGE = new ResourceProfile("large", 8192, 4, 1024);
+
+    /**
+     * Resolves a named profile, with any explicit value overriding the profile's. Explicit values alone start from
+     * the medium profile. Returns null when nothing was requested, which leaves the container unconstrained.
+     */
+    public static ResourceProfile resolve(String profile, Long memoryMb, Double cpus, Long shmSizeMb) {
+        boolean hasProfile = profile != null && !profile.isBlank();
+        if (!hasProfile && memoryMb == null && cpus == null && shmSizeMb == null) {
+            return null;
+        }
+        ResourceProfile base = hasProfile ? named(profile.trim()) : MEDIUM;
+        boolean custom = !hasProfile || memoryMb != null || cpus != null || shmSizeMb != null;
+        ResourceProfile resolved = new ResourceProfile(
+                custom ? "custom" : base.name(),
+                memoryMb != null ? memoryMb : base.memoryMb(),
+                cpus != null ? cpus : base.cpus(),
+                shmSizeMb != null ? shmSizeMb : base.shmSizeMb());
+        resolved.validate();
+        return resolved;
+    }
+
+    private static ResourceProfile named(String profile) {
+        return switch (profile.toLowerCase()) {
+            case "small" -> SMALL;
+            case "medium" -> MEDIUM;
+            case "large" -> LARGE;
+            default -> throw new InvalidInputException("Unknown resource profile '" + profile + "'. Use small, medium or large.");
+        };
+    }
+
+    private void validate() {
+        if (memoryMb < MIN_MEMORY_MB) {
+            throw new InvalidInputException("Memory must be at least " + MIN_MEMORY_MB + " MB.");
+        }
+        if (cpus <= 0) {
+            throw new InvalidInputException("CPUs must be a positive number.");
+        }
+        if (shmSizeMb < MIN_SHM_SIZE_MB) {
+            throw new InvalidInputException("Shared memory size must be at least " + MIN_SHM_SIZE_MB + " MB.");
+        }
+    }
+
+    public long memoryBytes() {
+        return memoryMb * 1024 * 1024;
+    }
+
+    public long nanoCpus() {
+        return Math.round(cpus * 1_000_000_000L);
+    }
+
+    public long shmSizeBytes() {
+        return shmSizeMb * 1024 * 1024;
+    }
+
+    public int maxConnections() {
+        return (int) Math.max(20, Math.min(200, memoryMb / 20));
+    }
+
+    /**
+     * Arguments for the postgres image's command, e.g. postgres -c shared_buffers=512MB ...
+     */
+    public List<String> postgresCommand() {
+        long sharedBuffersMb = memoryMb / 4;
+        long workMemMb = Math.max(1, (memoryMb - sharedBuffersMb) / (maxConnections() * 3L));
+        List<String> command = new ArrayList<>();
+        command.add("postgres");
+        addSetting(command, "shared_buffers", sharedBuffersMb + "MB");
+        addSetting(command, "effective_cache_size", (memoryMb * 3 / 4) + "MB");
+        addSetting(command, "work_mem", workMemMb + "MB");
+        addSetting(command, "max_connections", String.valueOf(maxConnections()));
+        return command;
+    }
+
+    private static void addSetting(List<String> command, String setting, String value) {
+        command.add("-c");
+        command.add(setting + "=" + value);
+    }
+}
@@ -0,0 +1,67 @@
+package com.dataforge.util;
+
+import com.dataforge.exception.InvalidInputException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Wire formats for tabular results.
+ * OBJECTS is the default array of row objects; COMPACT lists the columns once and each row as a positional array;
+ * COLUMNAR lists the columns once and one array of values per column; NDJSON writes one row object per line;
+ * ARROW is a binary Apache Arrow IPC stream of record batches.
+ */
+public enum ResultFormat {
+    OBJECTS(MediaType.APPLICATION_JSON),
+    COMPACT(MediaType.parseMediaType("application/vnd.dataforge.compact+json")),
+    COLUMNAR(MediaType.parseMediaType("application/vnd.dataforge.columnar+json")),
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+    ARROW(MediaType.parseMediaType("application/vnd.apache.arrow.stream"));
+
+    private final MediaType mediaType;
+
+    ResultFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Picks the format from the format request parameter, falling back to the Accept header. Accepted types are
+     * tried from the highest q-value down, in header order among equal q-values; q=0 excludes a type.
+     */
+    public static ResultFormat resolve(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            try {
+                return valueOf(format.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidInputException("Unknown format '" + format + "'. Use objects, compact, columnar, ndjson or arrow.");
+            }
+        }
+        if (accept != null) {
+            try {
+                List<MediaType> acceptedTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+                // List.sort is stable, so types with the same q-value keep their header order
+                acceptedTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+                for (MediaType acceptedType : acceptedTypes) {
+                    if (acceptedType.getQualityValue() == 0) {
+                        break;
+                    }
+                    for (ResultFormat candidate : values()) {
+                        if (candidate.mediaType.equalsTypeAndSubtype(acceptedType)) {
+                            return candidate;
+                        }
+                    }
+                }
+            } catch (InvalidMediaTypeException e) {
+                // A malformed Accept header falls back to the default format
+            }
+        }
+        return OBJECTS;
+    }
+}
@@ -0,0 +1,315 @@
+package com.dataforge.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes JSON straight from a ResultSet with a Jackson JsonGenerator, one row at a time,
+ * so no intermediate row maps or lists are built. Values are serialized with the application's ObjectMapper.
+ */
+@Component
+public class ResultSetJsonWriter {
+
+    // Rows written between flushes, so the client receives data while the query is still being read
+    private static final int FLUSH_INTERVAL = 500;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Columnar output is buffered on the heap until the last row is read, so it is capped
+    @Value("${dataforge.query.columnar.max-rows:100000}")
+    private int columnarMaxRows;
+
+    /**
+     * Writes the rows as a JSON array of objects keyed by column name.
+     */
+    public void writeRecords(ResultSet rs, OutputStream out) throws IOException, SQLException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            generator.writeStartArray();
+            writeRowObjects(generator, rs, metaData);
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes a keyset page as {"records":[...],"nextCursor":...}. The query must fetch one row more than
+     * {@code limit}; when that row exists, nextCursor is built from the key values of the last row written,
+     * otherwise it is null.
+     */
+    public void writeKeysetPage(ResultSet rs, OutputStream out, int limit, List<String> keyColumns,
+                                Function<List<Object>, String> cursorEncoder) throws IOException, SQLException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            String[] columnNames = new String[columnCount];
+            for (int i = 1; i <= columnCount; i++) {
+                columnNames[i - 1] = metaData.getColumnName(i);
+            }
+            int[] keyIndexes = new int[keyColumns.size()];
+            for (int k = 0; k < keyIndexes.length; k++) {
+                keyIndexes[k] = rs.findColumn(keyColumns.get(k));
+            }
+
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("records");
+            List<Object> lastKey = null;
+            int rowsWritten = 0;
+            boolean hasMore = false;
+            while (rs.next()) {
+                if (rowsWritten == limit) {
+                    hasMore = true;
+                    break;
+                }
+                generator.writeStartObject();
+                for (int i = 1; i <= columnCount; i++) {
+                    generator.writeFieldName(columnNames[i - 1]);
+                    generator.writeObject(rs.getObject(i));
+                }
+                generator.writeEndObject();
+                if (++rowsWritten == limit) {
+                    // Only the last row's key is needed, and it can't be read back once the cursor moves on
+                    lastKey = new ArrayList<>(keyIndexes.length);
+                    for (int keyIndex : keyIndexes) {
+                        lastKey.add(rs.getObject(keyIndex));
+                    }
+                }
+                if (rowsWritten % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+            generator.writeStringField("nextCursor", hasMore ? cursorEncoder.apply(lastKey) : null);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the rows in the given format: an array of objects for OBJECTS, otherwise
+     * a document with the column descriptions followed by the rows or the per-column values.
+     */
+    public void writeRecords(ResultSet rs, OutputStream out, ResultFormat format) throws IOException, SQLException {
+        if (format == ResultFormat.OBJECTS) {
+            writeRecords(rs, out);
+            return;
+        }
+        if (format == ResultFormat.NDJSON) {
+            writeNdjson(rs, out, Long.MAX_VALUE, Long.MAX_VALUE);
+            return;
+        }
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            writeTabularFields(generator, rs, format);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the rows in the same shape as SqlQueryResponse.forSelect, or with compact or
+     * columnar rows and typed column descriptions when another format is requested.
+     */
+    public void writeQueryResponse(ResultSet rs, OutputStream out, ResultFormat format) throws IOException, SQLException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeStringField("message", "Query executed successfully.");
+            generator.writeBooleanField("isQueryResult", true);
+            if (format == ResultFormat.OBJECTS) {
+                generator.writeArrayFieldStart("columns");
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    generator.writeString(metaData.getColumnName(i));
+                }
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("rows");
+                writeRowObjects(generator, rs, metaData);
+                generator.writeEndArray();
+            } else {
+                writeTabularFields(generator, rs, format);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes one JSON object per row, each on its own line, stopping once maxRows rows or about maxBytes bytes
+     * have been written. A stopped stream ends with a {"@truncated":true,...} line stating the limit that was hit.
+     * Rows are only fetched as fast as the client reads them, since each write blocks on the response stream.
+     */
+    public void writeNdjson(ResultSet rs, OutputStream out, long maxRows, long maxBytes) throws IOException, SQLException {
+        CountingOutputStream counter = new CountingOutputStream(out);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(counter, JsonEncoding.UTF8)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            String[] columnNames = new String[columnCount];
+            for (int i = 1; i <= columnCount; i++) {
+                columnNames[i - 1] = metaData.getColumnName(i);
+            }
+
+            long rowsWritten = 0;
+            String truncatedReason = null;
+            while (rs.next()) {
+                if (rowsWritten >= maxRows) {
+                    truncatedReason = "row limit of " + maxRows + " reached";
+                    break;
+                }
+                if (counter.count() + generator.getOutputBuffered() >= maxBytes) {
+                    truncatedReason = "byte limit of " + maxBytes + " reached";
+                    break;
+                }
+                generator.writeStartObject();
+                for (int i = 1; i <= columnCount; i++) {
+                    generator.writeFieldName(columnNames[i - 1]);
+                    generator.writeObject(rs.getObject(i));
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                if (++rowsWritten % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+
+            if (truncatedReason != null) {
+                generator.writeStartObject();
+                generator.writeBooleanField("@truncated", true);
+                generator.writeNumberField("rowsWritten", rowsWritten);
+                generator.writeStringField("reason", truncatedReason);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private void writeTabularFields(JsonGenerator generator, ResultSet rs, ResultFormat format) throws IOException, SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        generator.writeArrayFieldStart("columns");
+        for (int i = 1; i <= columnCount; i++) {
+            generator.writeStartObject();
+            generator.writeStringField("name", metaData.getColumnName(i));
+            generator.writeStringField("type", metaData.getColumnTypeName(i));
+            generator.writeStringField("jdbcType", jdbcTypeName(metaData.getColumnType(i)));
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        if (format == ResultFormat.COMPACT) {
+            generator.writeArrayFieldStart("rows");
+            int rowsWritten = 0;
+            while (rs.next()) {
+                generator.writeStartArray();
+                for (int i = 1; i <= columnCount; i++) {
+                    generator.writeObject(rs.getObject(i));
+                }
+                generator.writeEndArray();
+                if (++rowsWritten % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+        } else {
+            // Column-major output can only start once the last row is read, so the values are buffered per column
+            List<List<Object>> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(new ArrayList<>());
+            }
+            int rowsRead = 0;
+            boolean truncated = false;
+            while (rs.next()) {
+                if (rowsRead == columnarMaxRows) {
+                    truncated = true;
+                    break;
+                }
+                for (int i = 1; i <= columnCount; i++) {
+                    columns.get(i - 1).add(rs.getObject(i));
+                }
+                rowsRead++;
+            }
+            if (truncated) {
+                // Same marker fields as a truncated NDJSON stream; use ndjson or compact for larger results
+                generator.writeBooleanField("@truncated", true);
+                generator.writeNumberField("rowsWritten", rowsRead);
+                generator.writeStringField("reason", "columnar row limit of " + columnarMaxRows + " reached");
+            }
+            generator.writeArrayFieldStart("data");
+            for (List<Object> values : columns) {
+                generator.writeStartArray();
+                for (Object value : values) {
+                    generator.writeObject(value);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private String jdbcTypeName(int type) {
+        try {
+            return JDBCType.valueOf(type).getName();
+        } catch (IllegalArgumentException e) {
+            return String.valueOf(type); // Vendor-specific type code
+        }
+    }
+
+    private void writeRowObjects(JsonGenerator generator, ResultSet rs, ResultSetMetaData metaData) throws IOException, SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] columnNames = new String[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            columnNames[i - 1] = metaData.getColumnName(i);
+        }
+
+        int rowsWritten = 0;
+        while (rs.next()) {
+            generator.writeStartObject();
+            for (int i = 1; i <= columnCount; i++) {
+                generator.writeFieldName(columnNames[i - 1]);
+                generator.writeObject(rs.getObject(i));
+            }
+            generator.writeEndObject();
+            if (++rowsWritten % FLUSH_INTERVAL == 0) {
+                generator.flush();
+            }
+        }
+    }
+
+    // Counts the bytes handed to the response so the byte cap can be enforced
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
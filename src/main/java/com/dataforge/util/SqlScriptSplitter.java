@@ -0,0 +1,100 @@
+package com.dataforge.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a SQL script into statements at top-level semicolons. Semicolons inside quoted literals,
+ * quoted identifiers, comments and dollar-quoted bodies (function definitions) don't end a statement.
+ */
+public final class SqlScriptSplitter {
+
+    private SqlScriptSplitter() {
+    }
+
+    public static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        int length = script.length();
+        int start = 0;
+        int i = 0;
+        while (i < length) {
+            char c = script.charAt(i);
+            if (c == ';') {
+                addStatement(statements, script.substring(start, i));
+                start = i + 1;
+                i++;
+            } else {
+                i = skipToken(script, i);
+            }
+        }
+        addStatement(statements, script.substring(start));
+        return statements;
+    }
+
+    /**
+     * Returns the index just past the token starting at {@code i}: a whole quoted literal, quoted identifier,
+     * comment or dollar-quoted body, or a single character otherwise.
+     */
+    static int skipToken(String sql, int i) {
+        int length = sql.length();
+        char c = sql.charAt(i);
+        if (c == '\'' || c == '"') {
+            return skipQuoted(sql, i, c);
+        }
+        if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+            int end = sql.indexOf('\n', i);
+            return end < 0 ? length : end + 1;
+        }
+        if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+            int end = sql.indexOf("*/", i + 2);
+            return end < 0 ? length : end + 2;
+        }
+        if (c == '$') {
+            return skipDollarQuoted(sql, i);
+        }
+        return i + 1;
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2; // Doubled quote inside the literal
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static int skipDollarQuoted(String sql, int start) {
+        int tagEnd = start + 1;
+        while (tagEnd < sql.length() && (Character.isLetterOrDigit(sql.charAt(tagEnd)) || sql.charAt(tagEnd) == '_')) {
+            tagEnd++;
+        }
+        if (tagEnd >= sql.length() || sql.charAt(tagEnd) != '$') {
+            return start + 1; // Not a dollar quote, e.g. a $1 reference
+        }
+        String tag = sql.substring(start, tagEnd + 1);
+        int close = sql.indexOf(tag, tagEnd + 1);
+        return close < 0 ? sql.length() : close + tag.length();
+    }
+
+    // Skips fragments that hold nothing but whitespace and comments
+    private static void addStatement(List<String> statements, String statement) {
+        String trimmed = statement.strip();
+        int i = 0;
+        while (i < trimmed.length()) {
+            int end = skipToken(trimmed, i);
+            boolean comment = end - i > 1 && (trimmed.startsWith("--", i) || trimmed.startsWith("/*", i));
+            if (!comment && !Character.isWhitespace(trimmed.charAt(i))) {
+                statements.add(trimmed);
+                return;
+            }
+            i = end;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.SqlQueryResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryResultCacheTest {
+
+    private static final Long DB_ID = 1L;
+
+    private QueryResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new QueryResultCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1_048_576L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+    }
+
+    @Test
+    void putRacingInvalidateTableNeverLeavesStaleEntry() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                SqlQueryResponse response = response(i);
+                QueryResultCache.Key key = cache.keyFor(DB_ID, "SELECT * FROM users WHERE id = " + i, List.of());
+                // Read before the write starts, as QueryService does before executing
+                long generation = cache.generation(DB_ID);
+                CyclicBarrier start = new CyclicBarrier(2);
+                CompletableFuture<Void> put = CompletableFuture.runAsync(() -> {
+                    await(start);
+                    cache.put(key, response, Set.of("users"), generation);
+                }, executor);
+                CompletableFuture<Void> invalidate = CompletableFuture.runAsync(() -> {
+                    await(start);
+                    cache.invalidateTable(DB_ID, "users");
+                }, executor);
+                CompletableFuture.allOf(put, invalidate).get(5, TimeUnit.SECONDS);
+
+                assertThat(cache.get(key)).as("iteration %d", i).isNull();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void replacedEntryStaysIndexedForInvalidation() {
+        QueryResultCache.Key key = cache.keyFor(DB_ID, "SELECT * FROM users", List.of());
+        cache.put(key, response(1), Set.of("users"), cache.generation(DB_ID));
+        cache.put(key, response(2), Set.of("users"), cache.generation(DB_ID));
+        // Let the removal listener for the replaced entry run
+        ForkJoinPool.commonPool().awaitQuiescence(5, TimeUnit.SECONDS);
+
+        cache.invalidateTable(DB_ID, "USERS");
+
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @Test
+    void putAfterInvalidationIsSkipped() {
+        QueryResultCache.Key key = cache.keyFor(DB_ID, "SELECT * FROM users", List.of());
+        long generation = cache.generation(DB_ID);
+        cache.invalidateTable(DB_ID, "users");
+
+        cache.put(key, response(1), Set.of("users"), generation);
+
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @Test
+    void invalidateTableKeepsEntriesOfOtherTables() {
+        QueryResultCache.Key users = cache.keyFor(DB_ID, "SELECT * FROM users", List.of());
+        QueryResultCache.Key orders = cache.keyFor(DB_ID, "SELECT  *  FROM orders;", List.of());
+        cache.put(users, response(1), Set.of("users"), cache.generation(DB_ID));
+        cache.put(orders, response(2), Set.of("orders"), cache.generation(DB_ID));
+
+        cache.invalidateTable(DB_ID, "users");
+
+        assertThat(cache.get(users)).isNull();
+        assertThat(cache.get(cache.keyFor(DB_ID, "SELECT * FROM orders", List.of()))).isEqualTo(response(2));
+    }
+
+    private static SqlQueryResponse response(int id) {
+        return SqlQueryResponse.forSelect(List.of("id"), List.of(Map.of("id", id)));
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.dataforge.service;
+
+import com.dataforge.dto.SqlScriptResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryServiceTest {
+
+    // No collaborators are set: a rejected script must fail before it touches a connection
+    private final QueryService queryService = new QueryService();
+
+    @Test
+    void scriptRejectsTransactionControl() {
+        for (String statement : List.of("COMMIT", "begin", "  /* done */ ROLLBACK", "SAVEPOINT s1", "END")) {
+            SqlScriptResponse response = queryService.executeScript(1L, List.of("INSERT INTO t VALUES (1)", statement), null);
+
+            assertThat(response.success()).as(statement).isFalse();
+            assertThat(response.failedStatement()).as(statement).isEqualTo(1);
+            assertThat(response.results()).as(statement).isEmpty();
+        }
+    }
+}
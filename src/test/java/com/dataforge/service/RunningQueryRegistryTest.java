@@ -0,0 +1,73 @@
+package com.dataforge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RunningQueryRegistryTest {
+
+    private static final Long DB_ID = 1L;
+
+    private final RunningQueryRegistry registry = new RunningQueryRegistry();
+
+    @AfterEach
+    void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    void cancelBeforeRegistrationPreventsTheStatement() {
+        registry.cancelOrPreempt("job-1");
+
+        assertThatThrownBy(() -> registry.register("job-1", DB_ID, "SELECT 1", statement(), 60))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(registry.list(DB_ID)).isEmpty();
+    }
+
+    @Test
+    void cancelAfterRegistrationCancelsTheStatement() throws Exception {
+        Statement statement = statement();
+        registry.register("job-1", DB_ID, "SELECT 1", statement, 60);
+
+        registry.cancelOrPreempt("job-1");
+
+        verify(statement).cancel();
+        registry.deregister("job-1");
+        // The mark was consumed, so the id can be registered again
+        registry.register("job-1", DB_ID, "SELECT 1", statement, 60);
+        assertThat(registry.list(DB_ID)).hasSize(1);
+    }
+
+    @Test
+    void clearedPendingCancelNoLongerApplies() {
+        registry.cancelOrPreempt("job-1");
+        registry.clearPendingCancel("job-1");
+
+        registry.register("job-1", DB_ID, "SELECT 1", statement(), 60);
+
+        assertThat(registry.list(DB_ID)).extracting("queryId").containsExactly("job-1");
+    }
+
+    // Not a pgjdbc connection, so the registry records no backend pid
+    private static Statement statement() {
+        try {
+            Connection connection = mock(Connection.class);
+            when(connection.unwrap(PGConnection.class)).thenThrow(new SQLException("Not a Postgres connection"));
+            Statement statement = mock(Statement.class);
+            when(statement.getConnection()).thenReturn(connection);
+            return statement;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
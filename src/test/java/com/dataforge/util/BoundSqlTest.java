@@ -0,0 +1,72 @@
+package com.dataforge.util;
+
+import com.dataforge.exception.InvalidInputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundSqlTest {
+
+    @Test
+    void rewritesNamedParametersInOrderOfUse() {
+        BoundSql bound = BoundSql.of("SELECT * FROM t WHERE a = :a AND b = :b OR a = :a", null, Map.of("a", 1, "b", "x"));
+
+        assertThat(bound.sql()).isEqualTo("SELECT * FROM t WHERE a = ? AND b = ? OR a = ?");
+        assertThat(bound.params()).containsExactly(1, "x", 1);
+    }
+
+    @Test
+    void leavesCastsQuotesCommentsAndDollarBodiesUntouched() {
+        String sql = "SELECT :id::int, ':not', \":col\", $$ :body $$ -- :comment\n FROM t";
+
+        BoundSql bound = BoundSql.of(sql, null, Map.of("id", "7"));
+
+        assertThat(bound.sql()).isEqualTo("SELECT ?::int, ':not', \":col\", $$ :body $$ -- :comment\n FROM t");
+        assertThat(bound.params()).containsExactly("7");
+    }
+
+    @Test
+    void escapesQuestionMarkOperatorsOnlyWhenRewriting() {
+        String sql = "SELECT data ? 'key' FROM t WHERE id = :id";
+
+        assertThat(BoundSql.of(sql, null, Map.of("id", 1)).sql()).isEqualTo("SELECT data ?? 'key' FROM t WHERE id = ?");
+        // Positional statements are passed through as written
+        assertThat(BoundSql.of("SELECT ? + 1", List.of(1), null).sql()).isEqualTo("SELECT ? + 1");
+    }
+
+    @Test
+    void bindsNullValues() {
+        Map<String, Object> named = new HashMap<>();
+        named.put("a", null);
+
+        assertThat(BoundSql.of("SELECT :a", null, named).params()).containsExactly((Object) null);
+        assertThat(BoundSql.of("SELECT ?", Arrays.asList((Object) null), null).params()).containsExactly((Object) null);
+    }
+
+    @Test
+    void rejectsMissingNamedValues() {
+        assertThatThrownBy(() -> BoundSql.of("SELECT :a, :b", null, Map.of("a", 1)))
+                .isInstanceOf(InvalidInputException.class)
+                .hasMessageContaining(":b");
+    }
+
+    @Test
+    void rejectsMixedParameterStyles() {
+        assertThatThrownBy(() -> BoundSql.of("SELECT ?", List.of(1), Map.of("a", 1)))
+                .isInstanceOf(InvalidInputException.class);
+    }
+
+    @Test
+    void hasNoParamsWithoutValues() {
+        BoundSql bound = BoundSql.of("SELECT :a", null, null);
+
+        assertThat(bound.sql()).isEqualTo("SELECT :a");
+        assertThat(bound.hasParams()).isFalse();
+    }
+}
@@ -0,0 +1,71 @@
+package com.dataforge.util;
+
+import com.dataforge.exception.InvalidInputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    private static final List<String> KEY_COLUMNS = List.of("created_at", "id");
+
+    @Test
+    void roundTripsValues() {
+        List<String> values = List.of("2024-01-01 10:00:00", "42");
+
+        assertThat(KeysetCursor.decode(KeysetCursor.encode(KEY_COLUMNS, "ASC", values), KEY_COLUMNS, "ASC")).isEqualTo(values);
+    }
+
+    @Test
+    void roundTripsNullKeys() {
+        List<String> values = Arrays.asList(null, "42");
+
+        String cursor = KeysetCursor.encode(KEY_COLUMNS, "ASC", values);
+
+        assertThat(KeysetCursor.decode(cursor, KEY_COLUMNS, "ASC")).containsExactly(null, "42");
+    }
+
+    @Test
+    void isUrlSafe() {
+        String cursor = KeysetCursor.encode(KEY_COLUMNS, "ASC", List.of("???>>>", "~~~"));
+
+        assertThat(cursor).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void rejectsCursorForOtherKeyColumns() {
+        String cursor = KeysetCursor.encode(KEY_COLUMNS, "ASC", List.of("2024-01-01", "42"));
+
+        assertThatThrownBy(() -> KeysetCursor.decode(cursor, List.of("id"), "ASC"))
+                .isInstanceOf(InvalidInputException.class)
+                .hasMessageContaining("different ordering");
+    }
+
+    @Test
+    void rejectsCursorForOtherDirection() {
+        String cursor = KeysetCursor.encode(KEY_COLUMNS, "ASC", List.of("2024-01-01", "42"));
+
+        assertThatThrownBy(() -> KeysetCursor.decode(cursor, KEY_COLUMNS, "DESC"))
+                .isInstanceOf(InvalidInputException.class)
+                .hasMessageContaining("different ordering");
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        String notJson = Base64.getUrlEncoder().encodeToString("not json".getBytes());
+        String wrongShape = Base64.getUrlEncoder().encodeToString("{\"k\":[\"id\"],\"v\":\"42\"}".getBytes());
+        String missingValue = Base64.getUrlEncoder().encodeToString("{\"k\":[\"created_at\",\"id\"],\"d\":\"ASC\",\"v\":[\"1\"]}".getBytes());
+
+        for (String cursor : List.of("%%%", notJson, wrongShape, missingValue)) {
+            assertThatThrownBy(() -> KeysetCursor.decode(cursor, cursor.equals(wrongShape) ? List.of("id") : KEY_COLUMNS, "ASC"))
+                    .as(cursor)
+                    .isInstanceOf(InvalidInputException.class)
+                    .hasMessage("Invalid pagination cursor.");
+        }
+    }
+}
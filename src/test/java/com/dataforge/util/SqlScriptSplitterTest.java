@@ -0,0 +1,47 @@
+package com.dataforge.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlScriptSplitterTest {
+
+    @Test
+    void splitsAtTopLevelSemicolons() {
+        assertThat(SqlScriptSplitter.split("CREATE TABLE t (id int);\nINSERT INTO t VALUES (1) ;SELECT 1"))
+                .containsExactly("CREATE TABLE t (id int)", "INSERT INTO t VALUES (1)", "SELECT 1");
+    }
+
+    @Test
+    void keepsSemicolonsInsideQuotesAndComments() {
+        String script = "INSERT INTO t VALUES ('a;b', 'it''s;');\n"
+                + "SELECT \"odd;name\" FROM t; -- trailing; comment\n"
+                + "/* block; comment */ SELECT 2;";
+
+        assertThat(SqlScriptSplitter.split(script)).containsExactly(
+                "INSERT INTO t VALUES ('a;b', 'it''s;')",
+                "SELECT \"odd;name\" FROM t",
+                "-- trailing; comment\n/* block; comment */ SELECT 2");
+    }
+
+    @Test
+    void keepsDollarQuotedBodiesWhole() {
+        String function = "CREATE FUNCTION f() RETURNS int AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql";
+        String anonymous = "DO $$ BEGIN PERFORM 1; END $$";
+
+        assertThat(SqlScriptSplitter.split(function + ";\n" + anonymous + ";"))
+                .containsExactly(function, anonymous);
+    }
+
+    @Test
+    void treatsPositionalReferencesAsPlainText() {
+        assertThat(SqlScriptSplitter.split("PREPARE p AS SELECT $1; EXECUTE p(1)"))
+                .containsExactly("PREPARE p AS SELECT $1", "EXECUTE p(1)");
+    }
+
+    @Test
+    void dropsEmptyAndCommentOnlyStatements() {
+        assertThat(SqlScriptSplitter.split(";; -- only a comment\n; /* another */ ;SELECT 1;  \n")).containsExactly("SELECT 1");
+        assertThat(SqlScriptSplitter.split("   ")).isEmpty();
+    }
+}